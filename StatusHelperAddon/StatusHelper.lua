@@ -12,13 +12,43 @@ local FishingIDs = {
 local isFishing = false
 local justCaught = false
 local justTooFar = false
+local freeSlots = 0
+local lootCount = 0
+local tooFarCount = 0
+local frameSequence = 0
+
+-- Pixel bridge: a row of 2x2 pixel cells at the top-left of the screen (0,0)
+--   Cell 1: the original status pixel (see UpdatePixelBridge)
+--   Cell 2: R frame sequence, G flags, B free bag slots
+--   Cell 3: R loot counter, G too far counter, B checksum
+-- Bytes are exact values (n / 255), wrapping at 256
+local CELL_SIZE = 2
+local NUM_CELLS = 3
+local FLAG_FISHING = 1
+local FLAG_CAUGHT = 2
+local FLAG_TOO_FAR = 4
+local FLAG_BAGS_FULL = 8
 
--- Create a tiny frame at the top-left of the screen (0,0)
 local f = CreateFrame("Frame", "StatusHelperFrame", UIParent)
-f:SetSize(2, 2)
+f:SetSize(CELL_SIZE * NUM_CELLS, CELL_SIZE)
 f:SetPoint("TOPLEFT", 0, 0)
-f.tex = f:CreateTexture(nil, "OVERLAY")
-f.tex:SetAllPoints()
+f.cells = {}
+for i = 1, NUM_CELLS do
+    local tex = f:CreateTexture(nil, "OVERLAY")
+    tex:SetSize(CELL_SIZE, CELL_SIZE)
+    tex:SetPoint("TOPLEFT", (i - 1) * CELL_SIZE, 0)
+    f.cells[i] = tex
+end
+f.tex = f.cells[1]
+
+-- Scale the strip so one unit is one physical pixel, the tool reads exact pixel positions
+local function UpdatePixelScale()
+    if not GetPhysicalScreenSize then return end
+    local _, physicalHeight = GetPhysicalScreenSize()
+    if physicalHeight and physicalHeight > 0 then
+        f:SetScale(768 / physicalHeight / UIParent:GetEffectiveScale())
+    end
+end
 
 -- Create status indicator frame
 local statusFrame = CreateFrame("Frame", "StatusHelperStatusFrame", UIParent)
@@ -35,10 +65,34 @@ statusFrame.text:SetPoint("CENTER")
 statusFrame.text:SetText("StatusHelper: ACTIVE")
 statusFrame.text:SetTextColor(0, 1, 0)
 
+-- Writes the exact state cells, called every frame so the sequence shows the game is still drawing
+local function UpdateStateCells()
+    if not isEnabled then
+        f.cells[2]:SetColorTexture(0, 0, 0)
+        f.cells[3]:SetColorTexture(0, 0, 0)
+        return
+    end
+
+    local flags = 0
+    if isFishing then flags = flags + FLAG_FISHING end
+    if justCaught then flags = flags + FLAG_CAUGHT end
+    if justTooFar then flags = flags + FLAG_TOO_FAR end
+    if freeSlots == 0 then flags = flags + FLAG_BAGS_FULL end
+    local slots = math.min(freeSlots, 255)
+    local loot = lootCount % 256
+    local tooFar = tooFarCount % 256
+    -- Same checksum as PixelBridge.checksum in the tool
+    local checksum = (frameSequence + 3 * flags + 5 * slots + 7 * loot + 11 * tooFar + 0xA5) % 256
+
+    f.cells[2]:SetColorTexture(frameSequence / 255, flags / 255, slots / 255)
+    f.cells[3]:SetColorTexture(loot / 255, tooFar / 255, checksum / 255)
+end
+
 -- Helper function to update the pixel bridge
 local function UpdatePixelBridge()
     if not isEnabled then
         f.tex:SetColorTexture(0, 0, 0)
+        UpdateStateCells()
         return
     end
 
@@ -49,7 +103,7 @@ local function UpdatePixelBridge()
     local r, g, b = 0, 0, 0
 
     -- Check Bags
-    local freeSlots = 0
+    freeSlots = 0
     for i = 0, NUM_BAG_SLOTS do
         local bagFreeSlots
         if C_Container and C_Container.GetContainerNumFreeSlots then
@@ -76,6 +130,7 @@ local function UpdatePixelBridge()
     end
 
     f.tex:SetColorTexture(r, g, b)
+    UpdateStateCells()
 end
 
 -- Helper function to show/hide status indicator
@@ -146,6 +201,10 @@ local function OnEvent(self, event, ...)
         end
     end
 
+    if event == "PLAYER_ENTERING_WORLD" or event == "UI_SCALE_CHANGED" or event == "DISPLAY_SIZE_CHANGED" then
+        UpdatePixelScale()
+    end
+
     if not isEnabled then return end
 
     if event == "BAG_UPDATE" or event == "BAG_UPDATE_DELAYED" or event == "PLAYER_ENTERING_WORLD" then
@@ -175,6 +234,7 @@ local function OnEvent(self, event, ...)
                  end
              end
              justCaught = true
+             lootCount = lootCount + 1
              UpdatePixelBridge()
              C_Timer.After(1, function()
                  justCaught = false
@@ -185,6 +245,7 @@ local function OnEvent(self, event, ...)
         local _, errorMsg = ...
         if errorMsg == ERR_OUT_OF_RANGE then
             justTooFar = true
+            tooFarCount = tooFarCount + 1
             UpdatePixelBridge()
             C_Timer.After(2, function()
                 justTooFar = false
@@ -203,8 +264,16 @@ f:RegisterEvent("UNIT_SPELLCAST_CHANNEL_START")
 f:RegisterEvent("UNIT_SPELLCAST_CHANNEL_STOP")
 f:RegisterEvent("CHAT_MSG_LOOT")
 f:RegisterEvent("UI_ERROR_MESSAGE")
+f:RegisterEvent("UI_SCALE_CHANGED")
+f:RegisterEvent("DISPLAY_SIZE_CHANGED")
 f:SetScript("OnEvent", OnEvent)
+f:SetScript("OnUpdate", function()
+    if not isEnabled then return end
+    frameSequence = (frameSequence + 1) % 256
+    UpdateStateCells()
+end)
 
 -- Initial status update
+UpdatePixelScale()
 UpdatePixelBridge()
 UpdateStatusIndicator()
@@ -0,0 +1,55 @@
+package no.kess.utility.bench;
+
+import no.kess.utility.audio.AudioSensor;
+import no.kess.utility.audio.SplashDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per audio hop of the RMS volume and splash band updates, over the stored two seconds of fishing audio.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioBenchmark {
+    @Param({"1024/128", "2048/256"})
+    public String windowHop;
+
+    private AudioSensor audioSensor;
+    private SplashDetector splashDetector;
+    private byte[] pcm;
+    private byte[] hop;
+    private int position;
+
+    @Setup
+    public void setup() {
+        String[] parts = windowHop.split("/");
+        int window = Integer.parseInt(parts[0]);
+        int hopSamples = Integer.parseInt(parts[1]);
+        audioSensor = new AudioSensor(window, hopSamples);
+        splashDetector = new SplashDetector((int) Fixtures.SAMPLE_RATE, window, SplashDetector.parseBands(SplashDetector.DEFAULT_BANDS));
+        pcm = Fixtures.loadAudio();
+        hop = new byte[hopSamples * 2];
+    }
+
+    private byte[] nextHop() {
+        if (position + hop.length > pcm.length) position = 0;
+        System.arraycopy(pcm, position, hop, 0, hop.length);
+        position += hop.length;
+        return hop;
+    }
+
+    @Benchmark
+    public double volumeUpdate() {
+        return audioSensor.update(nextHop(), hop.length);
+    }
+
+    @Benchmark
+    public double splashUpdate() {
+        return splashDetector.update(nextHop(), hop.length);
+    }
+}
@@ -0,0 +1,107 @@
+package no.kess.utility.bench;
+
+import no.kess.utility.config.AppConfig;
+import no.kess.utility.engine.BobberFinder;
+import no.kess.utility.engine.DetectionResult;
+import no.kess.utility.engine.FrameSource;
+import no.kess.utility.engine.ScreenCaptureService;
+import no.kess.utility.util.Clock;
+import no.kess.utility.util.Log;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole {@link BobberFinder#findBobber()} over a fixture ROI frame: capture, scoring and building the candidates, as
+ * the engine calls it once per cast. The frame is served from memory, so screen capture itself is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FinderBenchmark {
+    @Param({"320x240", "640x360", "960x540"})
+    public String roiSize;
+
+    // Detection mode, and for PEAK the scan mode
+    @Param({"BLOB", "PEAK/SEQUENTIAL", "PEAK/PYRAMID"})
+    public String mode;
+
+    private File directory;
+    private BobberFinder finder;
+
+    @Setup
+    public void setup() throws IOException {
+        BufferedImage frame = Fixtures.loadFrame(roiSize);
+        int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        Rectangle bounds = new Rectangle(0, 0, frame.getWidth(), frame.getHeight());
+
+        String[] parts = mode.split("/");
+        Properties properties = new Properties();
+        properties.setProperty("logLevel", "WARN");
+        properties.setProperty("roiX", "0");
+        properties.setProperty("roiY", "0");
+        properties.setProperty("roiW", String.valueOf(bounds.width));
+        properties.setProperty("roiH", String.valueOf(bounds.height));
+        properties.setProperty("detectionMode", parts[0]);
+        if (parts.length > 1) properties.setProperty("scanMode", parts[1]);
+        // One plain scan of the ROI per call, nothing learned between calls
+        properties.setProperty("adaptiveRoi", "false");
+        properties.setProperty("expandingSearch", "false");
+        properties.setProperty("useColorTable", "false");
+        directory = Files.createTempDirectory("fisherman-bench").toFile();
+        try (OutputStream output = new FileOutputStream(new File(directory, "utility.properties"))) {
+            properties.store(output, "Benchmark settings");
+        }
+
+        Log.setLevel(Log.Level.WARN);
+        AppConfig config = new AppConfig(directory);
+        finder = new BobberFinder(config, new FrameSource() {
+            @Override
+            public ScreenCaptureService.Frame capture(Rectangle area, long maxAgeMs) {
+                return ScreenCaptureService.Frame.wrap(pixels, 0, 0, bounds.width, bounds.height, 0);
+            }
+
+            @Override
+            public void readRow(int x, int y, int width, int[] dest, long maxAgeMs) {
+                System.arraycopy(pixels, y * bounds.width + x, dest, 0, width);
+            }
+
+            @Override
+            public Rectangle getScreenBounds(int screenIndex) {
+                return screenIndex == 0 ? bounds : null;
+            }
+        }, Clock.SYSTEM);
+
+        DetectionResult result = finder.findBobber();
+        System.out.println("\nFound " + (result.isFound() ? result.getBest() : "nothing") + ", "
+                + result.getPixelsExamined() + " pixels examined");
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public DetectionResult findBobber() {
+        return finder.findBobber();
+    }
+}
@@ -0,0 +1,44 @@
+package no.kess.utility.bench;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Regenerates the stored fixtures. Only needed when the generators in {@link Fixtures} change; the benchmarks never
+ * call it.
+ * <pre>
+ * java -cp fisherman-bench/target/benchmarks.jar no.kess.utility.bench.FixtureWriter fisherman-bench/src/main/resources/fixtures
+ * </pre>
+ */
+public final class FixtureWriter {
+    private static final int AUDIO_SECONDS = 2;
+
+    private FixtureWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "fisherman-bench/src/main/resources/fixtures");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        int[] dimensions = Fixtures.parseSize(Fixtures.STORED_ROI_SIZE);
+        File frameFile = new File(directory, Fixtures.roiFile(Fixtures.STORED_ROI_SIZE));
+        ImageIO.write(Fixtures.waterFrame(dimensions[0], dimensions[1], Fixtures.ROI_SEED), "png", frameFile);
+        System.out.println("Wrote " + frameFile);
+
+        int samples = (int) Fixtures.SAMPLE_RATE * AUDIO_SECONDS;
+        byte[] pcm = Fixtures.fishingAudio(samples, Fixtures.AUDIO_SEED);
+        AudioFormat format = new AudioFormat(Fixtures.SAMPLE_RATE, 16, 1, true, false);
+        File file = new File(directory, Fixtures.AUDIO_FILE);
+        try (AudioInputStream input = new AudioInputStream(new ByteArrayInputStream(pcm), format, samples)) {
+            AudioSystem.write(input, AudioFileFormat.Type.WAVE, file);
+        }
+        System.out.println("Wrote " + file);
+    }
+}
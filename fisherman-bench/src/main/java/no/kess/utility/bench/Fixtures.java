@@ -0,0 +1,149 @@
+package no.kess.utility.bench;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Benchmark inputs: frames shaped like a fishing ROI (noisy blue-green water with a small red bobber) and 16-bit PCM
+ * audio shaped like the game's sound while fishing.
+ * <p>
+ * One representative set is stored under {@code /fixtures} on the classpath: the smallest ROI frame and two seconds of
+ * audio. The larger frames are generated at setup with the same seed, so every run and every build still scans the
+ * same pixels. {@link FixtureWriter} regenerates the stored set from the generators here.
+ */
+public final class Fixtures {
+    public static final String[] ROI_SIZES = {"320x240", "640x360", "960x540"};
+    public static final String STORED_ROI_SIZE = "320x240";
+    public static final long ROI_SEED = 42;
+    public static final long AUDIO_SEED = 7;
+    public static final String AUDIO_FILE = "fishing.wav";
+    public static final float SAMPLE_RATE = 44100f;
+    private static final String DIRECTORY = "/fixtures/";
+
+    private Fixtures() {
+    }
+
+    public static String roiFile(String size) {
+        return "roi-" + size + ".png";
+    }
+
+    /**
+     * Loads the stored ROI frame, or generates a larger one, as a {@code TYPE_INT_RGB} image, the layout the screen
+     * capture hands to the scanners.
+     */
+    public static BufferedImage loadFrame(String size) {
+        if (!STORED_ROI_SIZE.equals(size)) {
+            int[] dimensions = parseSize(size);
+            return waterFrame(dimensions[0], dimensions[1], ROI_SEED);
+        }
+        try (InputStream input = open(roiFile(size))) {
+            BufferedImage stored = ImageIO.read(input);
+            if (stored == null) throw new IllegalStateException("Not an image: " + roiFile(size));
+            BufferedImage image = new BufferedImage(stored.getWidth(), stored.getHeight(), BufferedImage.TYPE_INT_RGB);
+            image.getGraphics().drawImage(stored, 0, 0, null);
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the stored audio as 16-bit little-endian mono PCM, the format the {@code AudioMonitor} captures in.
+     */
+    public static byte[] loadAudio() {
+        try (AudioInputStream input = AudioSystem.getAudioInputStream(new BufferedInputStream(open(AUDIO_FILE)))) {
+            AudioFormat format = input.getFormat();
+            if (format.getChannels() != 1 || format.getSampleSizeInBits() != 16 || format.isBigEndian()) {
+                throw new IllegalStateException("Expected 16-bit little-endian mono audio, got " + format);
+            }
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IllegalStateException("Not an audio file: " + AUDIO_FILE, e);
+        }
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream input = Fixtures.class.getResourceAsStream(DIRECTORY + name);
+        if (input == null) throw new IOException("Missing fixture " + DIRECTORY + name);
+        return input;
+    }
+
+    public static BufferedImage waterFrame(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        // Slow swells with a little grain on top, which also keeps the stored PNG small
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int swell = (int) (12 * Math.sin(x / 23.0 + Math.sin(y / 17.0) * 2) + 8 * Math.sin(y / 9.0));
+                int r = 30 + swell / 2 + random.nextInt(6);
+                int g = 80 + swell + random.nextInt(6);
+                int b = 115 + swell + random.nextInt(6);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        // Bobber: a small red disc with a darker body below it
+        int cx = width / 3 + random.nextInt(Math.max(1, width / 3));
+        int cy = height / 3 + random.nextInt(Math.max(1, height / 3));
+        for (int dy = -6; dy <= 6; dy++) {
+            for (int dx = -6; dx <= 6; dx++) {
+                int x = cx + dx;
+                int y = cy + dy;
+                if (x < 0 || y < 0 || x >= width || y >= height || dx * dx + dy * dy > 36) continue;
+                int r = 180 + random.nextInt(60);
+                int g = 20 + random.nextInt(30);
+                int b = 20 + random.nextInt(30);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        // A few isolated hot pixels of pure red, like UI or spell effects
+        for (int i = 0; i < 3; i++) {
+            image.setRGB(random.nextInt(width / 2) * 2, random.nextInt(height / 2) * 2, 0xFF0000);
+        }
+        return image;
+    }
+
+    /**
+     * 16-bit little-endian mono PCM at 44.1 kHz: low ambient noise and background music, with a half-second splash
+     * burst of band-limited noise in the middle.
+     */
+    public static byte[] fishingAudio(int samples, long seed) {
+        Random random = new Random(seed);
+        byte[] pcm = new byte[samples * 2];
+        int splashStart = samples / 2;
+        int splashEnd = splashStart + 22050;
+        double lowPass = 0;
+        for (int i = 0; i < samples; i++) {
+            double t = i / 44100.0;
+            double value = random.nextGaussian() * 150
+                    + 2500 * Math.sin(2 * Math.PI * 220 * t) + 1200 * Math.sin(2 * Math.PI * 330 * t);
+            if (i >= splashStart && i < splashEnd) {
+                // Differenced noise leans towards the high frequencies, like water
+                double noise = random.nextGaussian() * 6000;
+                value += noise - lowPass;
+                lowPass = noise;
+            }
+            short sample = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    public static int[] parseSize(String size) {
+        String[] parts = size.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+}
@@ -0,0 +1,109 @@
+package no.kess.utility.bench;
+
+import no.kess.utility.engine.BlobDetector;
+import no.kess.utility.engine.ColorLookupTable;
+import no.kess.utility.engine.PixelScorer;
+import no.kess.utility.engine.PyramidSearch;
+import no.kess.utility.engine.RednessScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-scan cost of the bobber redness scan over the fixture ROI frames, one scanner at a time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"320x240", "640x360", "960x540"})
+    public String roiSize;
+
+    private BufferedImage frame;
+    private int[] pixels;
+    private final PyramidSearch pyramidSearch = new PyramidSearch();
+    private final BlobDetector blobDetector = new BlobDetector();
+    private final RednessScanner.ParallelScan parallelScan = new RednessScanner.ParallelScan(ForkJoinPool.commonPool());
+    private ColorLookupTable colorTable;
+
+    @Setup
+    public void setup() {
+        int[] size = Fixtures.parseSize(roiSize);
+        frame = Fixtures.loadFrame(roiSize);
+        pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        pyramidScan();
+
+        // Calibrate on a box around the bobber the blob stage finds
+        blobDetect();
+        colorTable = ColorLookupTable.calibrate(pixels, 0, size[0], size[0], size[1],
+                blobDetector.getX(0) - 8, blobDetector.getY(0) - 8, 16, 16);
+        System.out.println("\nPixels examined: step-2 " + RednessScanner.samples(size[0], size[1], 2)
+                + ", pyramid " + pyramidSearch.getPixelsExamined());
+    }
+
+    /**
+     * The scan as it was before the raster path: getRGB per pixel, double math and a Point per improvement.
+     */
+    @Benchmark
+    public Point legacyGetRgb() {
+        Point bestPoint = null;
+        double maxRedness = 0;
+        for (int i = 0; i < frame.getWidth(); i += 2) {
+            for (int j = 0; j < frame.getHeight(); j += 2) {
+                int rgb = frame.getRGB(i, j);
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                if (r > 0 && r > g * 1.5 && r > b * 1.5) {
+                    double redness = r - (g + b) / 2.0;
+                    if (redness > maxRedness) {
+                        maxRedness = redness;
+                        bestPoint = new Point(i, j);
+                    }
+                }
+            }
+        }
+        return bestPoint;
+    }
+
+    @Benchmark
+    public long rasterScan() {
+        return RednessScanner.scan(frame, 2);
+    }
+
+    /**
+     * The Vector API scan when the core was built with {@code -Pvector} and the fork runs with the module added, the
+     * scalar scan otherwise.
+     */
+    @Benchmark
+    public long peakScannerScan() {
+        return RednessScanner.peakScanner().scan(pixels, 0, frame.getWidth(), frame.getWidth(), frame.getHeight(), 2);
+    }
+
+    @Benchmark
+    public long parallelScan() {
+        return parallelScan.scan(PixelScorer.REDNESS, pixels, 0, frame.getWidth(), frame.getWidth(), frame.getHeight(), 2);
+    }
+
+    @Benchmark
+    public long pyramidScan() {
+        return pyramidSearch.search(PixelScorer.REDNESS, pixels, 0, frame.getWidth(), frame.getWidth(), frame.getHeight());
+    }
+
+    @Benchmark
+    public boolean blobDetect() {
+        return blobDetector.detect(PixelScorer.REDNESS, pixels, 0, frame.getWidth(), frame.getWidth(), frame.getHeight(), 2);
+    }
+
+    @Benchmark
+    public long colorTableScan() {
+        return RednessScanner.scan(colorTable, pixels, 0, frame.getWidth(), frame.getWidth(), frame.getHeight(), 2);
+    }
+}
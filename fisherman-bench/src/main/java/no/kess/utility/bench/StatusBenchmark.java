@@ -0,0 +1,74 @@
+package no.kess.utility.bench;
+
+import no.kess.utility.engine.PixelBridge;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding one read of the addon's status strip, as the bridge sampler does every few milliseconds. The
+ * strips cycle through extended states, a legacy-only pixel and a torn read that fails the checksum.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusBenchmark {
+    private static final int STRIPS = 64;
+
+    private final int[] legacy = new int[STRIPS];
+    private final int[] cell1 = new int[STRIPS];
+    private final int[] cell2 = new int[STRIPS];
+    private int index;
+    private PixelBridge.Status previous;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < STRIPS; i++) {
+            boolean fishing = i % 4 != 0;
+            boolean caught = i % 8 == 5;
+            int flags = (fishing ? PixelBridge.Status.FLAG_FISHING : 0) | (caught ? PixelBridge.Status.FLAG_CAUGHT : 0);
+            legacy[i] = (fishing ? 0xFF00 : 0) | (caught ? 255 : 100);
+            cell1[i] = ((i * 3) & 0xFF) << 16 | flags << 8 | (100 - i / 8);
+            cell2[i] = (i / 8) << 16;
+            cell2[i] |= PixelBridge.checksum(cell1[i], cell2[i]);
+        }
+        // Without the addon's strip, only the legacy pixel reads
+        cell1[STRIPS - 2] = 0x101010;
+        cell2[STRIPS - 2] = 0x101010;
+        // Torn between two frames
+        cell2[STRIPS - 1] ^= 0x01;
+        previous = decodeNext();
+    }
+
+    private PixelBridge.Status decodeNext() {
+        int i = index;
+        index = (i + 1) & (STRIPS - 1);
+        return PixelBridge.decode(legacy[i], cell1[i], cell2[i], i, i);
+    }
+
+    @Benchmark
+    public PixelBridge.Status decode() {
+        return decodeNext();
+    }
+
+    /**
+     * Decoding plus what the engine asks of each reading while it waits for a bite.
+     */
+    @Benchmark
+    public boolean decodeAndCheck() {
+        PixelBridge.Status status = decodeNext();
+        boolean changed = status.isCaughtSince(previous) || status.isTooFarSince(previous);
+        previous = status;
+        return changed || status.isBagsFull() || !status.isFishing();
+    }
+
+    @Benchmark
+    public int checksum() {
+        int i = index;
+        index = (i + 1) & (STRIPS - 1);
+        return PixelBridge.checksum(cell1[i], cell2[i]);
+    }
+}
@@ -1,18 +1,49 @@
 package no.kess.utility.audio;
 
+import no.kess.utility.util.Log;
+
 import javax.sound.sampled.*;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleConsumer;
 
-public class AudioMonitor {
-    private final AudioSensor audioSensor = new AudioSensor();
-    private final Consumer<Double> volumeListener;
+public class AudioMonitor implements LevelSource {
+    private static final float SAMPLE_RATE = 44100;
+    // Noise floor history per estimator, and warm-up before a threshold is reported
+    private static final int NOISE_WINDOW_SECONDS = 60;
+    private static final int NOISE_WARMUP_SECONDS = 3;
+    // Listeners get the latest volume at most this often, intermediate values are skipped
+    private static final long LISTENER_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+    private int windowSamples = AudioSensor.DEFAULT_WINDOW_SAMPLES;
+    private int hopSamples = AudioSensor.DEFAULT_HOP_SAMPLES;
+    private double[][] splashBands = SplashDetector.parseBands(SplashDetector.DEFAULT_BANDS);
+    private double noiseQuantile = 0.99;
+    private double noiseMargin = 1.5;
+    private final DoubleConsumer volumeListener;
+    private final LevelHistory levelHistory = new LevelHistory();
     private volatile double currentVolume = 0.0;
+    private volatile double splashScore = 0.0;
+    private volatile double volumeNoiseFloor = Double.NaN;
+    private volatile double splashNoiseFloor = Double.NaN;
+    private volatile double volumeDynamicThreshold = Double.NaN;
+    private volatile double splashDynamicThreshold = Double.NaN;
     private volatile boolean monitoring = false;
     private Mixer.Info selectedMixerInfo;
     private Thread monitorThread;
+    private Thread listenerThread;
+
+    // Written by the capture thread only
+    private volatile long updates;
+    private volatile long lineOverruns;
+    private volatile long reads;
+    private volatile long readNanosTotal;
+    private volatile long readNanosMax;
+    // Written by the listener thread only
+    private volatile long throttledUpdates;
+    private volatile long droppedUpdates;
     private volatile TargetDataLine activeLine;
 
-    public AudioMonitor(Consumer<Double> volumeListener) {
+    public AudioMonitor(DoubleConsumer volumeListener) {
         this.volumeListener = volumeListener;
     }
 
@@ -20,11 +51,64 @@ public class AudioMonitor {
         this.selectedMixerInfo = mixerInfo;
     }
 
+    /**
+     * Sets the RMS window and how many new samples each volume update reads. Takes effect on the next {@link #start()}.
+     */
+    public synchronized void setWindow(int windowSamples, int hopSamples) {
+        this.windowSamples = windowSamples;
+        this.hopSamples = hopSamples;
+    }
+
+    /**
+     * Sets the frequency bands the splash score listens to. Takes effect on the next {@link #start()}.
+     */
+    public synchronized void setSplashBands(double[][] bands) {
+        this.splashBands = bands;
+    }
+
+    /**
+     * Sets the quantile of the ambient level taken as the noise floor and the margin the dynamic threshold adds on
+     * top of it. Takes effect on the next {@link #start()}.
+     */
+    public synchronized void setNoiseFloor(double quantile, double margin) {
+        this.noiseQuantile = quantile;
+        this.noiseMargin = margin;
+    }
+
     public synchronized void start() {
         if (monitoring) return;
         monitoring = true;
-        monitorThread = new Thread(this::monitorLoop, "AudioMonitorThread");
+        // Every line starts with an empty window
+        AudioSensor audioSensor = new AudioSensor(windowSamples, hopSamples);
+        SplashDetector splashDetector = new SplashDetector(SAMPLE_RATE, windowSamples, splashBands);
+        NoiseFloorEstimator volumeFloor = createNoiseFloorEstimator(audioSensor.getHopSamples());
+        NoiseFloorEstimator splashFloor = createNoiseFloorEstimator(audioSensor.getHopSamples());
+        volumeNoiseFloor = Double.NaN;
+        splashNoiseFloor = Double.NaN;
+        volumeDynamicThreshold = Double.NaN;
+        splashDynamicThreshold = Double.NaN;
+        updates = 0;
+        lineOverruns = 0;
+        reads = 0;
+        readNanosTotal = 0;
+        readNanosMax = 0;
+        throttledUpdates = 0;
+        droppedUpdates = 0;
+        monitorThread = new Thread(() -> monitorLoop(audioSensor, splashDetector, volumeFloor, splashFloor),
+                "AudioMonitorThread");
         monitorThread.start();
+        if (volumeListener != null) {
+            Thread captureThread = monitorThread;
+            listenerThread = new Thread(() -> listenerLoop(captureThread), "AudioListenerThread");
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+        }
+    }
+
+    private NoiseFloorEstimator createNoiseFloorEstimator(int hopSamples) {
+        long hopsPerSecond = Math.round(SAMPLE_RATE / hopSamples);
+        return new NoiseFloorEstimator(noiseQuantile, noiseMargin, NOISE_WINDOW_SECONDS * hopsPerSecond,
+                NOISE_WARMUP_SECONDS * hopsPerSecond);
     }
 
     public synchronized void stop() {
@@ -32,16 +116,71 @@ public class AudioMonitor {
         if (activeLine != null) {
             activeLine.close();
         }
+        if (listenerThread != null) {
+            LockSupport.unpark(listenerThread);
+        }
     }
 
     public double getCurrentVolume() {
         return currentVolume;
     }
 
-    private void monitorLoop() {
+    /**
+     * Band-limited splash score from the {@link SplashDetector}, on the same scale as the volume.
+     */
+    public double getSplashScore() {
+        return splashScore;
+    }
+
+    /**
+     * @return The ambient level estimated for the signal, or {@link Double#NaN} while still warming up.
+     */
+    public double getNoiseFloor(LevelHistory.Signal signal) {
+        return signal == LevelHistory.Signal.SPLASH_BAND ? splashNoiseFloor : volumeNoiseFloor;
+    }
+
+    /**
+     * @return The splash threshold derived from the noise floor, or {@link Double#NaN} while still warming up.
+     */
+    @Override
+    public double getDynamicThreshold(LevelHistory.Signal signal) {
+        return signal == LevelHistory.Signal.SPLASH_BAND ? splashDynamicThreshold : volumeDynamicThreshold;
+    }
+
+    /**
+     * @return The highest level seen at or after the given {@link System#currentTimeMillis()} time, within the last
+     * few seconds.
+     */
+    @Override
+    public double maxLevelSince(LevelHistory.Signal signal, long sinceMillis) {
+        return levelHistory.maxSince(signal, sinceMillis);
+    }
+
+    /**
+     * Blocks until a level seen at or after {@code afterMillis} exceeds the threshold. The capture thread wakes the
+     * caller as soon as it sees the crossing.
+     *
+     * @return The crossing level, or {@link LevelHistory#NO_CROSSING} on timeout.
+     */
+    public double awaitLevelAbove(LevelHistory.Signal signal, double threshold, long afterMillis, long timeoutMillis) {
+        return levelHistory.awaitAbove(signal, threshold, afterMillis, timeoutMillis);
+    }
+
+    /**
+     * Calls {@code callback} once when a level seen at or after {@code afterMillis} exceeds the threshold. Later
+     * crossings are reported from the capture thread, so the callback should only hand the event off.
+     */
+    @Override
+    public LevelHistory.Subscription onLevelAbove(LevelHistory.Signal signal, double threshold, long afterMillis,
+                                                  DoubleConsumer callback) {
+        return levelHistory.subscribeAbove(signal, threshold, afterMillis, callback);
+    }
+
+    private void monitorLoop(AudioSensor audioSensor, SplashDetector splashDetector,
+                             NoiseFloorEstimator volumeFloor, NoiseFloorEstimator splashFloor) {
         try {
             // Use 16-bit Mono, Little-Endian
-            AudioFormat format = new AudioFormat(44100, 16, 1, true, false);
+            AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
             DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
 
             TargetDataLine line;
@@ -57,15 +196,33 @@ public class AudioMonitor {
             line.start();
 
             while (monitoring) {
-                double vol = audioSensor.getCurrentVolume(line);
+                long readStart = System.nanoTime();
+                int bytesRead = audioSensor.read(line);
+                recordRead(System.nanoTime() - readStart, line, bytesRead);
+                double vol = 0.0;
+                if (bytesRead > 0) {
+                    vol = audioSensor.update(audioSensor.getBuffer(), bytesRead);
+                    double splash = splashDetector.update(audioSensor.getBuffer(), bytesRead);
+                    splashScore = splash;
+                    volumeFloor.add(vol);
+                    splashFloor.add(splash);
+                    volumeNoiseFloor = volumeFloor.getNoiseFloor();
+                    splashNoiseFloor = splashFloor.getNoiseFloor();
+                    volumeDynamicThreshold = volumeFloor.getThreshold();
+                    splashDynamicThreshold = splashFloor.getThreshold();
+                    levelHistory.record(System.currentTimeMillis(), vol, splash);
+                }
                 currentVolume = vol;
-                if (volumeListener != null) {
-                    volumeListener.accept(vol);
+                // Hand off to the listener thread, the capture thread never waits on a listener
+                updates++;
+                Thread listener = listenerThread;
+                if (listener != null) {
+                    LockSupport.unpark(listener);
                 }
             }
         } catch (Exception e) {
             if (monitoring) {
-                e.printStackTrace();
+                Log.error("Audio capture failed", e);
             }
         } finally {
             TargetDataLine line = activeLine;
@@ -77,4 +234,95 @@ public class AudioMonitor {
             monitoring = false;
         }
     }
+
+    private void recordRead(long nanos, TargetDataLine line, int bytesRead) {
+        reads++;
+        readNanosTotal += nanos;
+        if (nanos > readNanosMax) readNanosMax = nanos;
+        // A backlog within one read of the line buffer size means the line is about to drop, or already dropped, audio
+        if (line.available() >= line.getBufferSize() - Math.max(bytesRead, 0)) {
+            lineOverruns++;
+        }
+    }
+
+    /**
+     * Delivers the latest volume to the listener, at most every {@link #LISTENER_INTERVAL_NANOS}. Values published
+     * while the listener is busy or throttled are skipped, not queued.
+     */
+    private void listenerLoop(Thread captureThread) {
+        long seen = 0;
+        boolean overran = false;
+        while (captureThread.isAlive()) {
+            long published = updates;
+            if (published == seen) {
+                LockSupport.parkNanos(this, LISTENER_INTERVAL_NANOS);
+                continue;
+            }
+            // After an overrun there was no throttle wait, everything skipped was published during the slow call
+            if (overran) {
+                droppedUpdates += published - seen - 1;
+            } else {
+                throttledUpdates += published - seen - 1;
+            }
+            seen = published;
+            long start = System.nanoTime();
+            try {
+                volumeListener.accept(currentVolume);
+            } catch (RuntimeException e) {
+                Log.error("Volume listener failed", e);
+            }
+
+            long next = start + LISTENER_INTERVAL_NANOS;
+            overran = System.nanoTime() - next > 0;
+            long remaining;
+            while ((remaining = next - System.nanoTime()) > 0 && captureThread.isAlive()) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+    }
+
+    /**
+     * Number of volume updates published since the monitor started.
+     */
+    public long getUpdateCount() {
+        return updates;
+    }
+
+    /**
+     * Number of reads after which the line's buffer was (nearly) full, so the capture fell behind and audio was lost.
+     */
+    public long getLineOverruns() {
+        return lineOverruns;
+    }
+
+    /**
+     * Number of volume updates the listener never saw because they came in while it was throttled. Expected, the
+     * listener only wants the latest value every {@link #LISTENER_INTERVAL_NANOS}.
+     */
+    public long getThrottledUpdates() {
+        return throttledUpdates;
+    }
+
+    /**
+     * Number of volume updates the listener never saw because a listener call ran past the interval and a newer value
+     * replaced them first.
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates;
+    }
+
+    public double getAverageReadLatencyMs() {
+        long n = reads;
+        return n == 0 ? 0.0 : readNanosTotal / (double) n / 1_000_000.0;
+    }
+
+    public double getMaxReadLatencyMs() {
+        return readNanosMax / 1_000_000.0;
+    }
+
+    public String getCaptureSummary() {
+        return String.format("updates %d, overruns %d, throttled %d, dropped %d, read avg %.2fms max %.2fms",
+                getUpdateCount(), getLineOverruns(), getThrottledUpdates(), getDroppedUpdates(),
+                getAverageReadLatencyMs(), getMaxReadLatencyMs());
+    }
 }
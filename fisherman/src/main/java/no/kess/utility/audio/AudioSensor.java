@@ -2,25 +2,97 @@ package no.kess.utility.audio;
 
 import javax.sound.sampled.TargetDataLine;
 
+/**
+ * Streaming RMS volume over a sliding window of the most recent samples.
+ * <p>
+ * Each call reads only one hop of new samples, pushes their squares into a ring and keeps a running sum, so a fresh
+ * volume is available every hop instead of once per large block. Squares and the sum are kept in integers, which makes
+ * the result exactly the plain RMS over the same window.
+ */
 public class AudioSensor {
-    private final byte[] buffer = new byte[4096];
+    public static final int DEFAULT_WINDOW_SAMPLES = 1024;
+    public static final int DEFAULT_HOP_SAMPLES = 128;
+
+    private final byte[] buffer;
+    private final long[] squares;
+    private int head;
+    private int filled;
+    private long sum;
+
+    public AudioSensor() {
+        this(DEFAULT_WINDOW_SAMPLES, DEFAULT_HOP_SAMPLES);
+    }
+
+    /**
+     * @param windowSamples Number of samples the RMS is computed over.
+     * @param hopSamples    Number of new samples read per update, at most the window size.
+     */
+    public AudioSensor(int windowSamples, int hopSamples) {
+        int window = Math.max(1, windowSamples);
+        int hop = Math.max(1, Math.min(hopSamples, window));
+        this.buffer = new byte[hop * 2];
+        this.squares = new long[window];
+    }
+
+    public int getWindowSamples() {
+        return squares.length;
+    }
+
+    public int getHopSamples() {
+        return buffer.length / 2;
+    }
 
     // Threshold must be calibrated by the user!
     // 0.0 = Silent, 1.0 = Max Volume
     public double getCurrentVolume(TargetDataLine line) {
-        int bytesRead = line.read(buffer, 0, buffer.length);
+        int bytesRead = read(line);
         if (bytesRead <= 0) return 0.0;
+        return update(buffer, bytesRead);
+    }
+
+    /**
+     * Reads the next hop from the line into {@link #getBuffer()} without updating the volume.
+     *
+     * @return The number of bytes read.
+     */
+    public int read(TargetDataLine line) {
+        return line.read(buffer, 0, buffer.length);
+    }
 
-        // Calculate RMS (Root Mean Square) amplitude
-        long sum = 0;
-        for (int i = 0; i < bytesRead; i += 2) {
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Pushes 16-bit little-endian mono samples into the window.
+     *
+     * @return The RMS volume over the window after the update, normalized to 0.0 - 100.0.
+     */
+    public double update(byte[] data, int length) {
+        long[] ring = squares;
+        int h = head;
+        long s = sum;
+        for (int i = 0; i + 1 < length; i += 2) {
             // Convert byte pair to short (16-bit audio)
-            short sample = (short) ((buffer[i + 1] << 8) | (buffer[i] & 0xff));
-            sum += sample * sample;
+            short sample = (short) ((data[i + 1] << 8) | (data[i] & 0xff));
+            long square = (long) sample * sample;
+            s += square - ring[h];
+            ring[h] = square;
+            if (++h == ring.length) h = 0;
+            if (filled < ring.length) filled++;
         }
+        head = h;
+        sum = s;
+        return getVolume();
+    }
 
-        double rms = Math.sqrt(sum / (bytesRead / 2.0));
-        return (rms / 32768.0) * 100; // Normalize to 0.0 - 100.0
+    /**
+     * RMS volume over the window, normalized to 0.0 - 100.0. Until the window has filled up the RMS covers the samples
+     * seen so far.
+     */
+    public double getVolume() {
+        if (filled == 0) return 0.0;
+        double rms = Math.sqrt(sum / (double) filled);
+        return (rms / 32768.0) * 100;
     }
 }
-
@@ -0,0 +1,189 @@
+package no.kess.utility.audio;
+
+import no.kess.utility.util.Clock;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Lock-free ring of timestamped audio levels, written by the capture thread and read by any number of threads.
+ * <p>
+ * The writer fills a slot and then publishes it by advancing a volatile sequence. Readers walk back from the newest
+ * slot and re-check the sequence after each read, so a slot the writer has lapped is never used. Callers waiting for a
+ * threshold crossing register the threshold, and the writer notifies them only when a level actually crosses it.
+ * <p>
+ * Times are on the given {@link Clock}, which also times {@link #awaitAbove}.
+ */
+public class LevelHistory {
+    /**
+     * Returned by {@link #awaitAbove} when no level crossed the threshold in time.
+     */
+    public static final double NO_CROSSING = -1.0;
+    // About 12 seconds of levels at the default 128-sample hop
+    static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+
+    private final long[] times = new long[CAPACITY];
+    private final double[] volumes = new double[CAPACITY];
+    private final double[] splashScores = new double[CAPACITY];
+    private final CopyOnWriteArrayList<Waiter> waiters = new CopyOnWriteArrayList<>();
+    private final Clock clock;
+    private volatile long published;
+
+    public LevelHistory() {
+        this(Clock.SYSTEM);
+    }
+
+    public LevelHistory(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Appends a level pair. Only the capture thread may call this.
+     */
+    public void record(long timeMillis, double volume, double splashScore) {
+        long seq = published;
+        int slot = (int) (seq & MASK);
+        // The previous publish must be visible before the slot it laps is overwritten, or a reader could miss that
+        VarHandle.storeStoreFence();
+        times[slot] = timeMillis;
+        volumes[slot] = volume;
+        splashScores[slot] = splashScore;
+        published = seq + 1;
+
+        for (Waiter waiter : waiters) {
+            double level = waiter.signal == Signal.SPLASH_BAND ? splashScore : volume;
+            if (level > waiter.threshold && timeMillis >= waiter.afterMillis) {
+                waiter.fire(level);
+            }
+        }
+    }
+
+    /**
+     * @return The highest level recorded at or after the given time that is still in the ring, or 0 if there is none.
+     */
+    public double maxSince(Signal signal, long sinceMillis) {
+        double max = 0.0;
+        long newest = published - 1;
+        for (long seq = newest; seq >= 0 && newest - seq < CAPACITY; seq--) {
+            int slot = (int) (seq & MASK);
+            long time = times[slot];
+            double level = signal == Signal.SPLASH_BAND ? splashScores[slot] : volumes[slot];
+            // Keeps the reads above from moving past the re-check. Once published reaches seq + CAPACITY the writer
+            // may already be reusing the slot.
+            VarHandle.acquireFence();
+            if (published - seq >= CAPACITY) break; // Overwritten while reading
+            if (time < sinceMillis) break;
+            if (level > max) max = level;
+        }
+        return max;
+    }
+
+    /**
+     * First level recorded at or after {@code afterMillis} that exceeds the threshold, without waiting.
+     */
+    private double firstAbove(Signal signal, double threshold, long afterMillis) {
+        double first = NO_CROSSING;
+        long newest = published - 1;
+        for (long seq = newest; seq >= 0 && newest - seq < CAPACITY; seq--) {
+            int slot = (int) (seq & MASK);
+            long time = times[slot];
+            double level = signal == Signal.SPLASH_BAND ? splashScores[slot] : volumes[slot];
+            VarHandle.acquireFence();
+            if (published - seq >= CAPACITY) break;
+            if (time < afterMillis) break;
+            if (level > threshold) first = level;
+        }
+        return first;
+    }
+
+    /**
+     * Blocks until a level recorded at or after {@code afterMillis} exceeds the threshold. Crossings that happened
+     * before the call are found in the ring, so a short peak is never missed. The timeout runs on the clock.
+     *
+     * @return The crossing level, or {@link #NO_CROSSING} on timeout or interrupt.
+     */
+    public double awaitAbove(Signal signal, double threshold, long afterMillis, long timeoutMillis) {
+        long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread thread = Thread.currentThread();
+        Subscription subscription = subscribeAbove(signal, threshold, afterMillis, level -> LockSupport.unpark(thread));
+        try {
+            while (true) {
+                double level = firstAbove(signal, threshold, afterMillis);
+                if (level != NO_CROSSING) return level;
+                long remaining = deadline - clock.nanoTime();
+                if (remaining <= 0 || thread.isInterrupted()) return NO_CROSSING;
+                clock.parkNanos(this, remaining);
+            }
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Calls {@code callback} once, with the level, when a level recorded at or after {@code afterMillis} exceeds the
+     * threshold. A crossing already in the ring fires right away on the calling thread; later ones fire on the
+     * capture thread, so the callback must be quick and must not block.
+     */
+    public Subscription subscribeAbove(Signal signal, double threshold, long afterMillis, DoubleConsumer callback) {
+        Waiter waiter = new Waiter(signal, threshold, afterMillis, callback);
+        // Registered before checking, so a crossing recorded in between still fires
+        waiters.add(waiter);
+        double prior = firstAbove(signal, threshold, afterMillis);
+        if (prior != NO_CROSSING) {
+            waiter.fire(prior);
+        }
+        return waiter;
+    }
+
+    /**
+     * Which level a query looks at.
+     */
+    public enum Signal {
+        VOLUME,
+        SPLASH_BAND
+    }
+
+    /**
+     * A registered threshold callback.
+     */
+    public interface Subscription {
+        /**
+         * Stops the callback from firing. Safe to call after it fired.
+         */
+        void cancel();
+    }
+
+    private final class Waiter implements Subscription {
+        final Signal signal;
+        final double threshold;
+        final long afterMillis;
+        final DoubleConsumer callback;
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(Signal signal, double threshold, long afterMillis, DoubleConsumer callback) {
+            this.signal = signal;
+            this.threshold = threshold;
+            this.afterMillis = afterMillis;
+            this.callback = callback;
+        }
+
+        void fire(double level) {
+            if (done.compareAndSet(false, true)) {
+                waiters.remove(this);
+                callback.accept(level);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                waiters.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package no.kess.utility.audio;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Audio levels as the engine sees them: the {@link AudioMonitor} capturing a line, or a simulated game. Times are in
+ * the engine's clock.
+ */
+public interface LevelSource {
+    /**
+     * @return The splash threshold derived from the noise floor, or {@link Double#NaN} while still warming up.
+     */
+    double getDynamicThreshold(LevelHistory.Signal signal);
+
+    /**
+     * @return The highest level seen at or after the given time, within the last few seconds.
+     */
+    double maxLevelSince(LevelHistory.Signal signal, long sinceMillis);
+
+    /**
+     * Calls {@code callback} once when a level seen at or after {@code afterMillis} exceeds the threshold. It may run
+     * on another thread, so it should only hand the event off.
+     */
+    LevelHistory.Subscription onLevelAbove(LevelHistory.Signal signal, double threshold, long afterMillis,
+                                           DoubleConsumer callback);
+}
@@ -0,0 +1,78 @@
+package no.kess.utility.audio;
+
+/**
+ * Tracks the ambient level and derives a splash threshold from it: a high quantile of the recent levels times a
+ * margin.
+ * <p>
+ * Splashes would pull a plain high quantile up to their own level, so the quantile only sees levels within a fixed
+ * ratio of the median, which a short splash hardly moves. The median sees every level, so a lasting change in
+ * ambience (a new zone, music starting) moves the cut-off with it. Both are {@link P2Quantile} estimators, run twice
+ * staggered by half a window and restarted in turn, so the estimate always covers between half and a full window of
+ * recent history.
+ */
+public class NoiseFloorEstimator {
+    // Levels this many times above the median are treated as events, not ambience
+    private static final double OUTLIER_RATIO = 2.0;
+
+    private final double margin;
+    private final long windowSamples;
+    private final long warmupSamples;
+    private P2Quantile activeMedian;
+    private P2Quantile activeUpper;
+    private P2Quantile standbyMedian;
+    private P2Quantile standbyUpper;
+
+    /**
+     * @param quantile      Quantile of the ambient level taken as the noise floor, e.g. 0.99.
+     * @param margin        Factor applied to the noise floor to get the threshold.
+     * @param windowSamples Number of levels each estimator covers before it is restarted.
+     * @param warmupSamples Number of levels needed before a threshold is reported.
+     */
+    public NoiseFloorEstimator(double quantile, double margin, long windowSamples, long warmupSamples) {
+        this.margin = margin;
+        this.windowSamples = Math.max(10, windowSamples);
+        this.warmupSamples = Math.max(5, Math.min(warmupSamples, this.windowSamples / 2));
+        this.activeMedian = new P2Quantile(0.5);
+        this.activeUpper = new P2Quantile(quantile);
+        this.standbyMedian = new P2Quantile(0.5);
+        this.standbyUpper = new P2Quantile(quantile);
+    }
+
+    public void add(double level) {
+        // Gate on the mature median, a freshly restarted one would let a splash at its start through
+        boolean ambient = activeMedian.getCount() >= warmupSamples
+                && level <= activeMedian.getEstimate() * OUTLIER_RATIO;
+        activeMedian.add(level);
+        if (ambient) activeUpper.add(level);
+        if (activeMedian.getCount() > windowSamples / 2) {
+            standbyMedian.add(level);
+            if (ambient) standbyUpper.add(level);
+        }
+
+        if (activeMedian.getCount() >= windowSamples) {
+            P2Quantile expiredMedian = activeMedian;
+            P2Quantile expiredUpper = activeUpper;
+            activeMedian = standbyMedian;
+            activeUpper = standbyUpper;
+            standbyMedian = expiredMedian;
+            standbyUpper = expiredUpper;
+            standbyMedian.reset();
+            standbyUpper.reset();
+        }
+    }
+
+    /**
+     * @return The estimated noise floor, or {@link Double#NaN} while warming up.
+     */
+    public double getNoiseFloor() {
+        if (activeUpper.getCount() < warmupSamples) return Double.NaN;
+        return activeUpper.getEstimate();
+    }
+
+    /**
+     * @return The dynamic splash threshold, or {@link Double#NaN} while warming up.
+     */
+    public double getThreshold() {
+        return getNoiseFloor() * margin;
+    }
+}
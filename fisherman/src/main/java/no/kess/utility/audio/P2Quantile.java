@@ -0,0 +1,118 @@
+package no.kess.utility.audio;
+
+/**
+ * Streaming estimate of a single quantile with the P-squared algorithm (Jain and Chlamtac, 1985).
+ * <p>
+ * Five markers track the minimum, the quantile, the maximum and two points halfway in between. Each observation moves
+ * the markers by at most one position and adjusts their heights with a piecewise-parabolic fit, so memory and time per
+ * observation are constant and nothing is stored per sample.
+ */
+public final class P2Quantile {
+    private final double quantile;
+    private final double[] heights = new double[5];
+    private final double[] positions = new double[5];
+    private final double[] desired = new double[5];
+    private final double[] increments = new double[5];
+    private long count;
+
+    public P2Quantile(double quantile) {
+        this.quantile = quantile;
+        reset();
+    }
+
+    public void reset() {
+        count = 0;
+        for (int i = 0; i < 5; i++) {
+            positions[i] = i + 1;
+        }
+        desired[0] = 1;
+        desired[1] = 1 + 2 * quantile;
+        desired[2] = 1 + 4 * quantile;
+        desired[3] = 3 + 2 * quantile;
+        desired[4] = 5;
+        increments[0] = 0;
+        increments[1] = quantile / 2;
+        increments[2] = quantile;
+        increments[3] = (1 + quantile) / 2;
+        increments[4] = 1;
+    }
+
+    public void add(double x) {
+        if (count < 5) {
+            // Collect the first five observations sorted, they become the initial marker heights
+            int i = (int) count;
+            while (i > 0 && heights[i - 1] > x) {
+                heights[i] = heights[i - 1];
+                i--;
+            }
+            heights[i] = x;
+            count++;
+            return;
+        }
+        count++;
+
+        int cell;
+        if (x < heights[0]) {
+            heights[0] = x;
+            cell = 0;
+        } else if (x >= heights[4]) {
+            heights[4] = Math.max(heights[4], x);
+            cell = 3;
+        } else {
+            cell = 0;
+            while (x >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+        for (int i = cell + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increments[i];
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1) || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int sign = d > 0 ? 1 : -1;
+                double h = parabolic(i, sign);
+                if (heights[i - 1] < h && h < heights[i + 1]) {
+                    heights[i] = h;
+                } else {
+                    heights[i] = linear(i, sign);
+                }
+                positions[i] += sign;
+            }
+        }
+    }
+
+    private double parabolic(int i, int sign) {
+        double n = positions[i];
+        double nPrev = positions[i - 1];
+        double nNext = positions[i + 1];
+        return heights[i] + sign / (nNext - nPrev)
+                * ((n - nPrev + sign) * (heights[i + 1] - heights[i]) / (nNext - n)
+                + (nNext - n - sign) * (heights[i] - heights[i - 1]) / (n - nPrev));
+    }
+
+    private double linear(int i, int sign) {
+        return heights[i] + sign * (heights[i + sign] - heights[i]) / (positions[i + sign] - positions[i]);
+    }
+
+    /**
+     * @return The current estimate, or {@link Double#NaN} before any observation.
+     */
+    public double getEstimate() {
+        if (count == 0) return Double.NaN;
+        if (count < 5) {
+            // Too few for the markers, use the nearest-rank quantile of what was seen
+            int rank = (int) Math.min(count - 1, Math.round(quantile * (count - 1)));
+            return heights[rank];
+        }
+        return heights[2];
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,162 @@
+package no.kess.utility.audio;
+
+import no.kess.utility.util.Log;
+
+/**
+ * Frequency-selective splash detector that only listens to a few frequency bands.
+ * <p>
+ * Each band is covered by a handful of Goertzel filters evaluated over a Hann-windowed sliding window of the most recent
+ * samples. The score is the RMS level the band energy corresponds to, on the same 0.0 - 100.0 scale as the volume: white
+ * noise scores about the same as its volume, while music, voices and UI sounds outside the bands score close to zero.
+ * All buffers are allocated up front, so an update allocates nothing.
+ */
+public class SplashDetector {
+    public static final String DEFAULT_BANDS = "1000-2500,2500-5000";
+    private static final int MAX_BINS_PER_BAND = 6;
+
+    private final short[] samples;
+    private final double[] hann;
+    private final double windowPower;
+    private final int[] bandFirstBin;
+    private final double[] coeff;
+    private final double[] bandLevel;
+    private final double[] s1;
+    private final double[] s2;
+    private int head;
+    private double score;
+
+    /**
+     * @param sampleRate    Sample rate of the audio, in Hz.
+     * @param windowSamples Number of recent samples the filters run over.
+     * @param bands         Band edges in Hz, one {@code {low, high}} pair per band.
+     */
+    public SplashDetector(float sampleRate, int windowSamples, double[][] bands) {
+        int window = Math.max(16, windowSamples);
+        samples = new short[window];
+        hann = new double[window];
+        double power = 0;
+        for (int i = 0; i < window; i++) {
+            hann[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (window - 1));
+            power += hann[i] * hann[i];
+        }
+        windowPower = power;
+
+        // Spread the filters evenly over each band, about one per frequency bin but never more than the cap
+        double binWidth = sampleRate / window;
+        bandFirstBin = new int[bands.length + 1];
+        int[] binsPerBand = new int[bands.length];
+        for (int b = 0; b < bands.length; b++) {
+            double width = Math.max(0, bands[b][1] - bands[b][0]);
+            binsPerBand[b] = Math.max(1, Math.min(MAX_BINS_PER_BAND, (int) Math.ceil(width / binWidth)));
+            bandFirstBin[b + 1] = bandFirstBin[b] + binsPerBand[b];
+        }
+        coeff = new double[bandFirstBin[bands.length]];
+        for (int b = 0; b < bands.length; b++) {
+            double spacing = (bands[b][1] - bands[b][0]) / binsPerBand[b];
+            for (int k = 0; k < binsPerBand[b]; k++) {
+                double frequency = bands[b][0] + spacing * (k + 0.5);
+                coeff[bandFirstBin[b] + k] = 2 * Math.cos(2 * Math.PI * frequency / sampleRate);
+            }
+        }
+        bandLevel = new double[bands.length];
+        s1 = new double[coeff.length];
+        s2 = new double[coeff.length];
+    }
+
+    /**
+     * Parses band edges like {@code "1000-2500,2500-5000"}.
+     *
+     * @return The bands, or the default bands if the text is empty or malformed.
+     */
+    public static double[][] parseBands(String text) {
+        if (text != null && !text.trim().isEmpty()) {
+            try {
+                String[] parts = text.split(",");
+                double[][] bands = new double[parts.length][];
+                for (int i = 0; i < parts.length; i++) {
+                    String[] edges = parts[i].trim().split("-");
+                    double low = Double.parseDouble(edges[0].trim());
+                    double high = Double.parseDouble(edges[1].trim());
+                    if (low <= 0 || high <= low) throw new NumberFormatException("Bad band " + parts[i]);
+                    bands[i] = new double[]{low, high};
+                }
+                return bands;
+            } catch (RuntimeException e) {
+                Log.warn("Invalid splash bands '" + text + "', using " + DEFAULT_BANDS);
+            }
+        }
+        return parseBands(DEFAULT_BANDS);
+    }
+
+    /**
+     * Pushes 16-bit little-endian mono samples into the window and rescores it.
+     *
+     * @return The splash score after the update, 0.0 - 100.0.
+     */
+    public double update(byte[] data, int length) {
+        int h = head;
+        for (int i = 0; i + 1 < length; i += 2) {
+            samples[h] = (short) ((data[i + 1] << 8) | (data[i] & 0xff));
+            if (++h == samples.length) h = 0;
+        }
+        head = h;
+
+        runFilters();
+        double total = 0;
+        for (int b = 0; b < bandLevel.length; b++) {
+            double bandPower = 0;
+            for (int k = bandFirstBin[b]; k < bandFirstBin[b + 1]; k++) {
+                bandPower += s1[k] * s1[k] + s2[k] * s2[k] - coeff[k] * s1[k] * s2[k];
+            }
+            total += bandPower;
+            bandLevel[b] = level(bandPower / (bandFirstBin[b + 1] - bandFirstBin[b]));
+        }
+        score = level(total / coeff.length);
+        return score;
+    }
+
+    /**
+     * Runs every Goertzel filter over the window, oldest sample first. The filters are stepped together so their
+     * independent recurrences overlap instead of each one waiting on its own multiply chain.
+     */
+    private void runFilters() {
+        int bins = coeff.length;
+        for (int k = 0; k < bins; k++) {
+            s1[k] = 0;
+            s2[k] = 0;
+        }
+        int n = 0;
+        int i = head;
+        for (int remaining = samples.length; remaining > 0; remaining--) {
+            double x = samples[i] * hann[n++];
+            if (++i == samples.length) i = 0;
+            for (int k = 0; k < bins; k++) {
+                double s0 = x + coeff[k] * s1[k] - s2[k];
+                s2[k] = s1[k];
+                s1[k] = s0;
+            }
+        }
+    }
+
+    /**
+     * Converts a mean bin power to the RMS of white noise with the same spectral density, normalized to 0.0 - 100.0.
+     */
+    private double level(double meanPower) {
+        return Math.sqrt(meanPower / windowPower) / 32768.0 * 100;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getBandCount() {
+        return bandLevel.length;
+    }
+
+    /**
+     * Level of a single band from the last update, on the same scale as {@link #getScore()}.
+     */
+    public double getBandLevel(int band) {
+        return bandLevel[band];
+    }
+}
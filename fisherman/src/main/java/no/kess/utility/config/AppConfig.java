@@ -1,37 +1,233 @@
 package no.kess.utility.config;
 
+import no.kess.utility.audio.AudioSensor;
+import no.kess.utility.audio.SplashDetector;
+import no.kess.utility.engine.BobberFinder;
+import no.kess.utility.engine.PixelBridge;
 import no.kess.utility.input.NativeKeyboard;
+import no.kess.utility.util.Log;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
 import java.util.Properties;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The settings file and the counters next to it. The setters only change the live properties; a new {@link Settings}
+ * snapshot goes out to {@link #getSettings()} and the listeners on the next {@link #save()}, so a batch of edits is
+ * published once.
+ */
 public class AppConfig {
     private static final String CONFIG_FILE = "utility.properties";
+    // Written in full and then moved over the settings, so a crash never leaves half a file
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String COUNTERS_FILE = "utility.counters";
+    // Owned by the counter store and mirrored here, so a reload must not roll them back
+    private static final String[] RUNTIME_KEYS = {"fishCaught", "throws"};
+    // Editors often write a file in several steps, wait for them to finish before reloading
+    private static final long RELOAD_SETTLE_MS = 200;
+
+    private final File directory;
+    private final File configFile;
     private final Properties properties = new Properties();
+    private final CounterStore counters;
+    private final List<Consumer<Settings>> settingsListeners = new CopyOnWriteArrayList<>();
+    private volatile Settings settings;
+    private WatchService watchService;
+    private Thread watcher;
+    // Modification time and length of our last save, so the watcher can skip it
+    private volatile long savedModified = -1;
+    private volatile long savedLength = -1;
 
     public AppConfig() {
+        this(null);
+    }
+
+    /**
+     * Keeps the settings and every data file in the given directory, or in the working directory if it is null.
+     */
+    public AppConfig(File directory) {
+        this.directory = directory;
+        this.configFile = resolve(CONFIG_FILE);
         load();
+        // Older versions only kept the counters in the properties, they seed a new store
+        long[] seed = new long[CounterStore.Counter.values().length];
+        seed[CounterStore.Counter.THROWS.ordinal()] = getIntProperty("throws", 0);
+        seed[CounterStore.Counter.FISH_CAUGHT.ordinal()] = getIntProperty("fishCaught", 0);
+        counters = CounterStore.open(resolve(COUNTERS_FILE), seed);
+        properties.setProperty("throws", String.valueOf(counters.get(CounterStore.Counter.THROWS)));
+        properties.setProperty("fishCaught", String.valueOf(counters.get(CounterStore.Counter.FISH_CAUGHT)));
+    }
+
+    /**
+     * @return The named file next to the settings.
+     */
+    public File resolve(String fileName) {
+        return new File(directory, fileName);
     }
 
     public void load() {
-        File f = new File(CONFIG_FILE);
-        if (f.exists()) {
-            try (InputStream input = new FileInputStream(f)) {
+        if (configFile.exists()) {
+            try (InputStream input = new FileInputStream(configFile)) {
                 properties.load(input);
             } catch (IOException ex) {
-                ex.printStackTrace();
+                Log.error("Could not read " + configFile, ex);
             }
         }
+        publish();
     }
 
+    /**
+     * Writes the settings file and publishes a new snapshot.
+     */
     public void save() {
-        try (OutputStream output = new FileOutputStream(CONFIG_FILE)) {
-            properties.store(output, "Utility Configuration");
-            System.out.println("[DEBUG] Configuration saved to " + CONFIG_FILE);
+        File temp = resolve(CONFIG_FILE + TEMP_SUFFIX);
+        try {
+            try (OutputStream output = new FileOutputStream(temp)) {
+                properties.store(output, "Utility Configuration");
+            }
+            try {
+                Files.move(temp.toPath(), configFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), configFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            savedModified = configFile.lastModified();
+            savedLength = configFile.length();
+            Log.info("Configuration saved to " + configFile);
         } catch (IOException io) {
-            io.printStackTrace();
+            Log.error("Could not save " + configFile, io);
+        }
+        publish();
+    }
+
+    /**
+     * @return The current settings snapshot, replaced as a whole whenever the settings change.
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Registers a callback for every new settings snapshot, e.g. after the file was edited on disk.
+     */
+    public void addSettingsListener(Consumer<Settings> listener) {
+        settingsListeners.add(listener);
+    }
+
+    /**
+     * Builds, assigns and hands out the snapshot under the properties lock, which every property write takes too: a
+     * snapshot never mixes old and new values, and a save racing a reload cannot leave the older snapshot current or
+     * deliver it last. Listeners therefore run under the lock and must return quickly.
+     */
+    private void publish() {
+        synchronized (properties) {
+            Settings snapshot = new Settings(this);
+            settings = snapshot;
+            for (Consumer<Settings> listener : settingsListeners) {
+                listener.accept(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Watches the settings file and reloads it whenever it changes on disk. Safe to call more than once.
+     */
+    public synchronized void startWatching() {
+        if (watcher != null) return;
+        Path file = configFile.toPath().toAbsolutePath();
+        Path dir = file.getParent();
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            Log.error("Could not watch " + file + " for changes", e);
+            return;
+        }
+        WatchService service = watchService;
+        watcher = new Thread(() -> watchLoop(service, file.getFileName()), "ConfigWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher == null) return;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        watcher.interrupt();
+        watcher = null;
+        watchService = null;
+    }
+
+    private void watchLoop(WatchService service, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) return;
+                if (!changed) continue;
+
+                Thread.sleep(RELOAD_SETTLE_MS);
+                WatchKey pending;
+                while ((pending = service.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                if (isOwnSave()) continue;
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private boolean isOwnSave() {
+        return configFile.lastModified() == savedModified && configFile.length() == savedLength;
+    }
+
+    /**
+     * Re-reads the settings file and publishes a new snapshot if anything but the counters changed.
+     */
+    private void reload() {
+        Properties fresh = new Properties();
+        try (InputStream input = new FileInputStream(configFile)) {
+            fresh.load(input);
+        } catch (IOException ex) {
+            Log.error("Could not reload " + configFile, ex);
+            return;
+        }
+        synchronized (properties) {
+            for (String key : RUNTIME_KEYS) {
+                String value = properties.getProperty(key);
+                if (value != null) {
+                    fresh.setProperty(key, value);
+                }
+            }
+            // Edits that only touched comments or the counters
+            if (fresh.equals(properties)) return;
+            properties.keySet().retainAll(fresh.keySet());
+            properties.putAll(fresh);
         }
+        Log.info("Reloaded " + configFile + " after it changed on disk");
+        publish();
     }
 
     public double getSplashThreshold() {
@@ -42,6 +238,30 @@ public class AppConfig {
         properties.setProperty("splashThreshold", String.valueOf(val));
     }
 
+    public boolean isAdaptiveThreshold() {
+        return Boolean.parseBoolean(properties.getProperty("adaptiveThreshold", "false"));
+    }
+
+    public void setAdaptiveThreshold(boolean enabled) {
+        properties.setProperty("adaptiveThreshold", String.valueOf(enabled));
+    }
+
+    public double getNoiseQuantile() {
+        return getDoubleProperty("noiseQuantile", 0.99);
+    }
+
+    public void setNoiseQuantile(double quantile) {
+        properties.setProperty("noiseQuantile", String.valueOf(quantile));
+    }
+
+    public double getNoiseMargin() {
+        return getDoubleProperty("noiseMargin", 1.5);
+    }
+
+    public void setNoiseMargin(double margin) {
+        properties.setProperty("noiseMargin", String.valueOf(margin));
+    }
+
     public int getReactionTime() {
         return getIntProperty("reactionTime", 350);
     }
@@ -51,27 +271,45 @@ public class AppConfig {
     }
 
     public int getFishCaught() {
-        return getIntProperty("fishCaught", 0);
+        return (int) counters.get(CounterStore.Counter.FISH_CAUGHT);
     }
 
     public void setFishCaught(int val) {
-        properties.setProperty("fishCaught", String.valueOf(val));
+        synchronized (properties) {
+            counters.set(CounterStore.Counter.FISH_CAUGHT, val);
+            properties.setProperty("fishCaught", String.valueOf(val));
+        }
     }
 
+    /**
+     * Counts a catch. It is on disk when this returns, the settings file is only updated on the next save.
+     */
     public void incrementFishCaught() {
-        setFishCaught(getFishCaught() + 1);
+        synchronized (properties) {
+            long count = counters.increment(CounterStore.Counter.FISH_CAUGHT);
+            properties.setProperty("fishCaught", String.valueOf(count));
+        }
     }
 
     public int getThrows() {
-        return getIntProperty("throws", 0);
+        return (int) counters.get(CounterStore.Counter.THROWS);
     }
 
     public void setThrows(int val) {
-        properties.setProperty("throws", String.valueOf(val));
+        synchronized (properties) {
+            counters.set(CounterStore.Counter.THROWS, val);
+            properties.setProperty("throws", String.valueOf(val));
+        }
     }
 
+    /**
+     * Counts a cast. It is on disk when this returns, the settings file is only updated on the next save.
+     */
     public void incrementThrows() {
-        setThrows(getThrows() + 1);
+        synchronized (properties) {
+            long count = counters.increment(CounterStore.Counter.THROWS);
+            properties.setProperty("throws", String.valueOf(count));
+        }
     }
 
     public int getRunTimeLimit() {
@@ -90,6 +328,38 @@ public class AppConfig {
         properties.setProperty("audioDevice", name);
     }
 
+    public int getAudioWindowSamples() {
+        return getIntProperty("audioWindowSamples", AudioSensor.DEFAULT_WINDOW_SAMPLES);
+    }
+
+    public void setAudioWindowSamples(int samples) {
+        properties.setProperty("audioWindowSamples", String.valueOf(samples));
+    }
+
+    public int getAudioHopSamples() {
+        return getIntProperty("audioHopSamples", AudioSensor.DEFAULT_HOP_SAMPLES);
+    }
+
+    public void setAudioHopSamples(int samples) {
+        properties.setProperty("audioHopSamples", String.valueOf(samples));
+    }
+
+    public String getSplashBands() {
+        return properties.getProperty("splashBands", SplashDetector.DEFAULT_BANDS);
+    }
+
+    public void setSplashBands(String bands) {
+        properties.setProperty("splashBands", bands);
+    }
+
+    public boolean isBandSplashDetection() {
+        return Boolean.parseBoolean(properties.getProperty("bandSplashDetection", "false"));
+    }
+
+    public void setBandSplashDetection(boolean enabled) {
+        properties.setProperty("bandSplashDetection", String.valueOf(enabled));
+    }
+
     public int getInteractKey() {
         // Fallback to SCANCODE_F10 if not set
         return getIntProperty("interactKey", getIntProperty("actionKey", NativeKeyboard.SCANCODE_F10));
@@ -118,6 +388,14 @@ public class AppConfig {
         properties.setProperty("stopKey", String.valueOf(scanCode));
     }
 
+    public int getBridgeSampleInterval() {
+        return getIntProperty("bridgeSampleInterval", (int) PixelBridge.DEFAULT_SAMPLE_INTERVAL_MS);
+    }
+
+    public void setBridgeSampleInterval(int intervalMs) {
+        properties.setProperty("bridgeSampleInterval", String.valueOf(intervalMs));
+    }
+
     public int getScreenIndex() {
         return getIntProperty("screenIndex", 0);
     }
@@ -147,19 +425,77 @@ public class AppConfig {
     }
 
     public void setRoi(Rectangle roi) {
-        if (roi == null) {
-            properties.remove("roiX");
-            properties.remove("roiY");
-            properties.remove("roiW");
-            properties.remove("roiH");
-        } else {
-            properties.setProperty("roiX", String.valueOf(roi.x));
-            properties.setProperty("roiY", String.valueOf(roi.y));
-            properties.setProperty("roiW", String.valueOf(roi.width));
-            properties.setProperty("roiH", String.valueOf(roi.height));
+        // All four at once, so a snapshot never sees half a rectangle
+        synchronized (properties) {
+            if (roi == null) {
+                properties.remove("roiX");
+                properties.remove("roiY");
+                properties.remove("roiW");
+                properties.remove("roiH");
+            } else {
+                properties.setProperty("roiX", String.valueOf(roi.x));
+                properties.setProperty("roiY", String.valueOf(roi.y));
+                properties.setProperty("roiW", String.valueOf(roi.width));
+                properties.setProperty("roiH", String.valueOf(roi.height));
+            }
         }
     }
 
+    /**
+     * Defaults to the original single-pixel {@code PEAK} detection, so an upgrade does not change a tuned setup.
+     */
+    public BobberFinder.DetectionMode getDetectionMode() {
+        String val = properties.getProperty("detectionMode");
+        if (val == null) return BobberFinder.DetectionMode.PEAK;
+        try {
+            return BobberFinder.DetectionMode.valueOf(val.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return BobberFinder.DetectionMode.PEAK;
+        }
+    }
+
+    public void setDetectionMode(BobberFinder.DetectionMode mode) {
+        properties.setProperty("detectionMode", mode.name());
+    }
+
+    public BobberFinder.ScanMode getScanMode() {
+        String val = properties.getProperty("scanMode");
+        if (val == null) return BobberFinder.ScanMode.SEQUENTIAL;
+        try {
+            return BobberFinder.ScanMode.valueOf(val.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return BobberFinder.ScanMode.SEQUENTIAL;
+        }
+    }
+
+    public void setScanMode(BobberFinder.ScanMode mode) {
+        properties.setProperty("scanMode", mode.name());
+    }
+
+    public boolean isAdaptiveRoi() {
+        return Boolean.parseBoolean(properties.getProperty("adaptiveRoi", "false"));
+    }
+
+    public void setAdaptiveRoi(boolean enabled) {
+        properties.setProperty("adaptiveRoi", String.valueOf(enabled));
+    }
+
+    public boolean isExpandingSearch() {
+        return Boolean.parseBoolean(properties.getProperty("expandingSearch", "false"));
+    }
+
+    public void setExpandingSearch(boolean enabled) {
+        properties.setProperty("expandingSearch", String.valueOf(enabled));
+    }
+
+    public boolean isUseColorTable() {
+        return Boolean.parseBoolean(properties.getProperty("useColorTable", "false"));
+    }
+
+    public void setUseColorTable(boolean enabled) {
+        properties.setProperty("useColorTable", String.valueOf(enabled));
+    }
+
     public boolean isLureEnabled() {
         return Boolean.parseBoolean(properties.getProperty("lureEnabled", "false"));
     }
@@ -200,6 +536,41 @@ public class AppConfig {
         properties.setProperty("logoutAfterFullBag", String.valueOf(logout));
     }
 
+    public Log.Level getLogLevel() {
+        return Log.Level.parse(properties.getProperty("logLevel"), Log.Level.INFO);
+    }
+
+    public void setLogLevel(Log.Level level) {
+        properties.setProperty("logLevel", level.name());
+    }
+
+    /**
+     * @return File the log is also written to, or an empty string for console only.
+     */
+    public String getLogFile() {
+        return properties.getProperty("logFile", "");
+    }
+
+    public void setLogFile(String path) {
+        properties.setProperty("logFile", path);
+    }
+
+    public int getLogMaxKb() {
+        return getIntProperty("logMaxKb", 5120);
+    }
+
+    public void setLogMaxKb(int kilobytes) {
+        properties.setProperty("logMaxKb", String.valueOf(kilobytes));
+    }
+
+    public int getLogBackups() {
+        return getIntProperty("logBackups", 3);
+    }
+
+    public void setLogBackups(int backups) {
+        properties.setProperty("logBackups", String.valueOf(backups));
+    }
+
     private int getIntProperty(String key, int defaultValue) {
         String val = properties.getProperty(key);
         if (val == null) return defaultValue;
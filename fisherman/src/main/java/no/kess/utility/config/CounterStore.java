@@ -0,0 +1,129 @@
+package no.kess.utility.config;
+
+import no.kess.utility.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Lifetime counters kept in a small memory-mapped file, so every increment is on disk without rewriting the settings.
+ * <p>
+ * The file holds two copies of a fixed-width record: a generation number, one long per {@link Counter} and a CRC.
+ * Each update writes the copy with the older generation and flushes it, so if the process dies halfway through a
+ * write the other copy is still intact, and opening the file picks the newest copy with a valid CRC. If the file
+ * cannot be mapped the counters are only kept in memory.
+ */
+public final class CounterStore {
+    private static final int MAGIC = 0x46495348; // "FISH"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 8 * (Counter.values().length + 2);
+    private static final int FILE_BYTES = HEADER_BYTES + 2 * RECORD_BYTES;
+
+    private final long[] values = new long[Counter.values().length];
+    private final CRC32 crc = new CRC32();
+    private final MappedByteBuffer map;
+    private long generation;
+
+    private CounterStore(MappedByteBuffer map) {
+        this.map = map;
+    }
+
+    /**
+     * Opens the store, creating it from {@code seed} (one value per {@link Counter}) if the file is missing or holds no
+     * valid record.
+     */
+    public static CounterStore open(File file, long[] seed) {
+        MappedByteBuffer map = null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        } catch (IOException e) {
+            Log.error("Could not map " + file + ", counters are kept in memory only", e);
+        }
+
+        CounterStore store = new CounterStore(map);
+        if (map == null || !store.recover()) {
+            Log.info("Creating " + file + " from the saved counters");
+            System.arraycopy(seed, 0, store.values, 0, Math.min(seed.length, store.values.length));
+            store.generation = 0;
+            if (map != null) {
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                store.write();
+            }
+        }
+        return store;
+    }
+
+    public synchronized long get(Counter counter) {
+        return values[counter.ordinal()];
+    }
+
+    public synchronized long increment(Counter counter) {
+        values[counter.ordinal()]++;
+        write();
+        return values[counter.ordinal()];
+    }
+
+    public synchronized void set(Counter counter, long value) {
+        values[counter.ordinal()] = value;
+        write();
+    }
+
+    /**
+     * Loads the newest valid copy.
+     *
+     * @return False if the file holds no valid record.
+     */
+    private boolean recover() {
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return false;
+        int best = -1;
+        long bestGeneration = -1;
+        for (int copy = 0; copy < 2; copy++) {
+            int offset = HEADER_BYTES + copy * RECORD_BYTES;
+            long gen = map.getLong(offset);
+            if (gen > bestGeneration && map.getLong(offset + RECORD_BYTES - 8) == checksum(offset)) {
+                best = copy;
+                bestGeneration = gen;
+            }
+        }
+        if (best < 0) return false;
+        int offset = HEADER_BYTES + best * RECORD_BYTES;
+        generation = bestGeneration;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.getLong(offset + 8 + i * 8);
+        }
+        return true;
+    }
+
+    private void write() {
+        if (map == null) return;
+        generation++;
+        // Overwrite the older copy, the newer one stays valid until this one is complete
+        int offset = HEADER_BYTES + (int) (generation & 1) * RECORD_BYTES;
+        map.putLong(offset, generation);
+        for (int i = 0; i < values.length; i++) {
+            map.putLong(offset + 8 + i * 8, values[i]);
+        }
+        map.putLong(offset + RECORD_BYTES - 8, checksum(offset));
+        map.force();
+    }
+
+    private long checksum(int offset) {
+        crc.reset();
+        for (int i = offset; i < offset + RECORD_BYTES - 8; i++) {
+            crc.update(map.get(i));
+        }
+        return crc.getValue();
+    }
+
+    public enum Counter {
+        THROWS,
+        FISH_CAUGHT
+    }
+}
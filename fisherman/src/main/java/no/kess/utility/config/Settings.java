@@ -0,0 +1,166 @@
+package no.kess.utility.config;
+
+import no.kess.utility.engine.BobberFinder;
+import no.kess.utility.util.Log;
+
+import java.awt.*;
+
+/**
+ * Immutable, pre-parsed snapshot of the settings the bot reads while running.
+ * <p>
+ * {@link AppConfig} builds a new snapshot whenever its settings are loaded, saved or changed on disk, and hands out the
+ * current one through {@link AppConfig#getSettings()}. A cycle captures one snapshot and reads plain fields from it, so
+ * the hot path does no string lookups or parsing and never sees half of an update.
+ */
+public final class Settings {
+    private final int screenIndex;
+    private final Rectangle roi;
+    private final BobberFinder.DetectionMode detectionMode;
+    private final BobberFinder.ScanMode scanMode;
+    private final boolean adaptiveRoi;
+    private final boolean expandingSearch;
+    private final boolean useColorTable;
+    private final double splashThreshold;
+    private final boolean adaptiveThreshold;
+    private final boolean bandSplashDetection;
+    private final int reactionTime;
+    private final int runTimeLimit;
+    private final int castKey;
+    private final int interactKey;
+    private final int stopKey;
+    private final boolean lureEnabled;
+    private final int lureKey;
+    private final int lureInterval;
+    private final boolean showDetectionPoint;
+    private final boolean logoutAfterFullBag;
+    private final Log.Level logLevel;
+    private final String logFile;
+    private final int logMaxKb;
+    private final int logBackups;
+
+    Settings(AppConfig config) {
+        screenIndex = config.getScreenIndex();
+        roi = config.getRoi();
+        detectionMode = config.getDetectionMode();
+        scanMode = config.getScanMode();
+        adaptiveRoi = config.isAdaptiveRoi();
+        expandingSearch = config.isExpandingSearch();
+        useColorTable = config.isUseColorTable();
+        splashThreshold = config.getSplashThreshold();
+        adaptiveThreshold = config.isAdaptiveThreshold();
+        bandSplashDetection = config.isBandSplashDetection();
+        reactionTime = config.getReactionTime();
+        runTimeLimit = config.getRunTimeLimit();
+        castKey = config.getCastKey();
+        interactKey = config.getInteractKey();
+        stopKey = config.getStopKey();
+        lureEnabled = config.isLureEnabled();
+        lureKey = config.getLureKey();
+        lureInterval = config.getLureInterval();
+        showDetectionPoint = config.isShowDetectionPoint();
+        logoutAfterFullBag = config.isLogoutAfterFullBag();
+        logLevel = config.getLogLevel();
+        logFile = config.getLogFile();
+        logMaxKb = config.getLogMaxKb();
+        logBackups = config.getLogBackups();
+    }
+
+    public int getScreenIndex() {
+        return screenIndex;
+    }
+
+    /**
+     * @return A copy of the configured search area, or null to use the default.
+     */
+    public Rectangle getRoi() {
+        return roi == null ? null : new Rectangle(roi);
+    }
+
+    public BobberFinder.DetectionMode getDetectionMode() {
+        return detectionMode;
+    }
+
+    public BobberFinder.ScanMode getScanMode() {
+        return scanMode;
+    }
+
+    public boolean isAdaptiveRoi() {
+        return adaptiveRoi;
+    }
+
+    public boolean isExpandingSearch() {
+        return expandingSearch;
+    }
+
+    public boolean isUseColorTable() {
+        return useColorTable;
+    }
+
+    public double getSplashThreshold() {
+        return splashThreshold;
+    }
+
+    public boolean isAdaptiveThreshold() {
+        return adaptiveThreshold;
+    }
+
+    public boolean isBandSplashDetection() {
+        return bandSplashDetection;
+    }
+
+    public int getReactionTime() {
+        return reactionTime;
+    }
+
+    public int getRunTimeLimit() {
+        return runTimeLimit;
+    }
+
+    public int getCastKey() {
+        return castKey;
+    }
+
+    public int getInteractKey() {
+        return interactKey;
+    }
+
+    public int getStopKey() {
+        return stopKey;
+    }
+
+    public boolean isLureEnabled() {
+        return lureEnabled;
+    }
+
+    public int getLureKey() {
+        return lureKey;
+    }
+
+    public int getLureInterval() {
+        return lureInterval;
+    }
+
+    public boolean isShowDetectionPoint() {
+        return showDetectionPoint;
+    }
+
+    public boolean isLogoutAfterFullBag() {
+        return logoutAfterFullBag;
+    }
+
+    public Log.Level getLogLevel() {
+        return logLevel;
+    }
+
+    public String getLogFile() {
+        return logFile;
+    }
+
+    public int getLogMaxKb() {
+        return logMaxKb;
+    }
+
+    public int getLogBackups() {
+        return logBackups;
+    }
+}
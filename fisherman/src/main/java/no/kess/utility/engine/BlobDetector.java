@@ -0,0 +1,260 @@
+package no.kess.utility.engine;
+
+import java.util.Arrays;
+
+/**
+ * Finds the bobber as the best connected blob of red pixels instead of the single reddest pixel.
+ * <p>
+ * The area is thresholded on a sampling grid (step 2, like the plain scan), and connected components are labelled in
+ * one raster pass with a union-find over primitive arrays, so every pixel is read exactly once. Blob statistics are
+ * kept on the union-find roots and merged when two labels join. The number of labels is capped to bound the work on
+ * very noisy frames.
+ */
+public class BlobDetector {
+    private static final int MAX_LABELS = 4096;
+    // Areas below are in step-2 samples; blobs larger than this are UI or effects, not a bobber
+    private static final int MAX_BLOB_AREA = 1024;
+    private static final int AREA_SATURATION = 64;
+    public static final int MAX_CANDIDATES = 5;
+    // Sampled rows between deadline checks
+    private static final int DEADLINE_CHECK_ROWS = 8;
+
+    private final int[] parent = new int[MAX_LABELS];
+    private final int[] count = new int[MAX_LABELS];
+    private final long[] sumScore = new long[MAX_LABELS];
+    private final long[] sumX = new long[MAX_LABELS];
+    private final long[] sumY = new long[MAX_LABELS];
+    private final int[] minX = new int[MAX_LABELS];
+    private final int[] maxX = new int[MAX_LABELS];
+    private final int[] minY = new int[MAX_LABELS];
+    private final int[] maxY = new int[MAX_LABELS];
+    private int[] prevRow = new int[0];
+    private int[] currRow = new int[0];
+    private int labelCount;
+    private int step;
+
+    private final int[] rankX = new int[MAX_CANDIDATES];
+    private final int[] rankY = new int[MAX_CANDIDATES];
+    private final int[] rankArea = new int[MAX_CANDIDATES];
+    private final double[] rankScore = new double[MAX_CANDIDATES];
+    private int rankCount;
+    private int blobCount;
+    private boolean truncated;
+
+    /**
+     * Labels the area and ranks the best blobs.
+     *
+     * @return {@code true} if a candidate was found; read the ranking through the getters.
+     */
+    public boolean detect(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height, int step) {
+        return detect(scorer, pixels, offset, scanline, width, height, step, Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #detect(PixelScorer, int[], int, int, int, int, int)}, but stops labelling once
+     * {@link System#nanoTime()} passes {@code deadlineNanos} and ranks the blobs of the rows labelled so far.
+     *
+     * @param deadlineNanos Deadline on {@link System#nanoTime()}, or {@link Long#MAX_VALUE} for none.
+     */
+    public boolean detect(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height, int step,
+                          long deadlineNanos) {
+        this.step = step;
+        this.truncated = false;
+        int maskThreshold = scorer.getMaskThreshold();
+        int gridWidth = (width + step - 1) / step;
+        if (prevRow.length < gridWidth) {
+            prevRow = new int[gridWidth];
+            currRow = new int[gridWidth];
+        }
+        Arrays.fill(prevRow, 0, gridWidth, 0);
+        labelCount = 1; // Label 0 is background
+
+        // Peak sample, used when no sample passes the mask threshold
+        long peak = RednessScanner.NONE;
+
+        int rowsLabelled = 0;
+        for (int y = 0; y < height; y += step) {
+            if (deadlineNanos != Long.MAX_VALUE && ++rowsLabelled % DEADLINE_CHECK_ROWS == 0
+                    && System.nanoTime() - deadlineNanos > 0) {
+                truncated = true;
+                break;
+            }
+            int row = offset + y * scanline;
+            for (int gx = 0; gx < gridWidth; gx++) {
+                int x = gx * step;
+                int s = scorer.score(pixels[row + x]);
+                if (s > 0) {
+                    long candidate = RednessScanner.pack(s, x, y);
+                    if (candidate > peak) peak = candidate;
+                }
+                if (s < maskThreshold) {
+                    currRow[gx] = 0;
+                    continue;
+                }
+                currRow[gx] = label(gx, gridWidth, s, x, y);
+            }
+            int[] tmp = prevRow;
+            prevRow = currRow;
+            currRow = tmp;
+        }
+
+        rankBlobs();
+        if (rankCount == 0 && peak != RednessScanner.NONE) {
+            offer(RednessScanner.xOf(peak), RednessScanner.yOf(peak), RednessScanner.scoreOf(peak) / 2.0, 1);
+        }
+        return rankCount > 0;
+    }
+
+    private int label(int gx, int gridWidth, int s, int x, int y) {
+        int left = gx > 0 ? currRow[gx - 1] : 0;
+        int upLeft = gx > 0 ? prevRow[gx - 1] : 0;
+        int up = prevRow[gx];
+        int upRight = gx + 1 < gridWidth ? prevRow[gx + 1] : 0;
+
+        int label = 0;
+        if (left != 0) label = union(label, left);
+        if (upLeft != 0) label = union(label, upLeft);
+        if (up != 0) label = union(label, up);
+        if (upRight != 0) label = union(label, upRight);
+
+        if (label == 0) {
+            if (labelCount == MAX_LABELS) return 0; // Out of labels, drop the sample
+            label = labelCount++;
+            parent[label] = label;
+            count[label] = 0;
+            sumScore[label] = 0;
+            sumX[label] = 0;
+            sumY[label] = 0;
+            minX[label] = x;
+            maxX[label] = x;
+            minY[label] = y;
+            maxY[label] = y;
+        }
+
+        count[label]++;
+        sumScore[label] += s;
+        sumX[label] += x;
+        sumY[label] += y;
+        if (x < minX[label]) minX[label] = x;
+        if (x > maxX[label]) maxX[label] = x;
+        if (y < minY[label]) minY[label] = y;
+        if (y > maxY[label]) maxY[label] = y;
+        return label;
+    }
+
+    private int find(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]]; // Path halving
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * Joins two labels (0 meaning none) and returns the root, keeping statistics on the lower, older label.
+     */
+    private int union(int a, int b) {
+        int rb = find(b);
+        if (a == 0) return rb;
+        int ra = find(a);
+        if (ra == rb) return ra;
+        int root = Math.min(ra, rb);
+        int child = Math.max(ra, rb);
+        parent[child] = root;
+        count[root] += count[child];
+        sumScore[root] += sumScore[child];
+        sumX[root] += sumX[child];
+        sumY[root] += sumY[child];
+        minX[root] = Math.min(minX[root], minX[child]);
+        maxX[root] = Math.max(maxX[root], maxX[child]);
+        minY[root] = Math.min(minY[root], minY[child]);
+        maxY[root] = Math.max(maxY[root], maxY[child]);
+        return root;
+    }
+
+    private void rankBlobs() {
+        blobCount = 0;
+        rankCount = 0;
+        for (int label = 1; label < labelCount; label++) {
+            if (parent[label] != label) continue;
+            blobCount++;
+            double score = blobScore(label);
+            if (score > 0) {
+                offer((int) (sumX[label] / count[label]), (int) (sumY[label] / count[label]), score, count[label]);
+            }
+        }
+    }
+
+    /**
+     * Inserts a blob into the ranking. Equal scores keep the earlier (upper-left most) blob first.
+     */
+    private void offer(int x, int y, double score, int area) {
+        int pos = rankCount;
+        while (pos > 0 && rankScore[pos - 1] < score) {
+            pos--;
+        }
+        if (pos >= MAX_CANDIDATES) return;
+        int last = Math.min(rankCount, MAX_CANDIDATES - 1);
+        for (int i = last; i > pos; i--) {
+            rankX[i] = rankX[i - 1];
+            rankY[i] = rankY[i - 1];
+            rankScore[i] = rankScore[i - 1];
+            rankArea[i] = rankArea[i - 1];
+        }
+        rankX[pos] = x;
+        rankY[pos] = y;
+        rankScore[pos] = score;
+        rankArea[pos] = area;
+        if (rankCount < MAX_CANDIDATES) rankCount++;
+    }
+
+    /**
+     * Mean redness weighted by compactness and (saturating) area, so a lone hot pixel loses to a bobber-sized blob.
+     */
+    private double blobScore(int label) {
+        // Normalise to step-2 samples so the score means the same at any step
+        double area = count[label] * (step * step) / 4.0;
+        if (area > MAX_BLOB_AREA) return 0;
+        double meanRedness = sumScore[label] / (2.0 * count[label]);
+        int w = (maxX[label] - minX[label]) / step + 1;
+        int h = (maxY[label] - minY[label]) / step + 1;
+        double fill = (double) count[label] / (w * h);
+        double aspect = (double) Math.min(w, h) / Math.max(w, h);
+        double areaWeight = Math.log(1 + Math.min(area, AREA_SATURATION)) / Math.log(2);
+        return meanRedness * fill * aspect * areaWeight;
+    }
+
+    /**
+     * Whether the last {@link #detect} hit its deadline and only labelled part of the area.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Number of ranked candidates from the last {@link #detect} call, at most {@link #MAX_CANDIDATES}.
+     */
+    public int getCandidateCount() {
+        return rankCount;
+    }
+
+    public int getX(int rank) {
+        return rankX[rank];
+    }
+
+    public int getY(int rank) {
+        return rankY[rank];
+    }
+
+    public double getScore(int rank) {
+        return rankScore[rank];
+    }
+
+    public int getArea(int rank) {
+        return rankArea[rank];
+    }
+
+    public int getBlobCount() {
+        return blobCount;
+    }
+}
@@ -1,35 +1,118 @@
 package no.kess.utility.engine;
 
 import no.kess.utility.config.AppConfig;
+import no.kess.utility.config.Settings;
+import no.kess.utility.util.Clock;
+import no.kess.utility.util.Log;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class BobberFinder {
-    private final Robot robot;
+    // Rows scanned between deadline checks of a budgeted peak scan, a multiple of every sampling step
+    private static final int DEADLINE_BAND_ROWS = 64;
+    private final FrameSource frameSource;
     private final AppConfig config;
+    private final PyramidSearch pyramidSearch = new PyramidSearch();
+    private final BlobDetector blobDetector = new BlobDetector();
+    private final RednessScanner.ParallelScan parallelScan = new RednessScanner.ParallelScan(ForkJoinPool.commonPool());
+    private final RoiHeatmap heatmap;
+    private final ExpandingSearch expandingSearch;
+    private ColorLookupTable colorTable;
+    private long lastPixelsExamined;
+    // Snapshot of the search in progress
+    private Settings settings;
 
     public BobberFinder(AppConfig config) {
+        this(config, ScreenCaptureService.getInstance(), Clock.SYSTEM);
+    }
+
+    public BobberFinder(AppConfig config, FrameSource frameSource, Clock clock) {
         this.config = config;
-        try {
-            this.robot = new Robot();
-        } catch (AWTException e) {
-            throw new RuntimeException("Could not initialize Robot for BobberFinder", e);
+        this.settings = config.getSettings();
+        this.frameSource = frameSource;
+        this.heatmap = new RoiHeatmap(config.resolve(RoiHeatmap.HEATMAP_FILE));
+        this.expandingSearch = new ExpandingSearch(this, clock);
+        this.colorTable = ColorLookupTable.load(config.resolve(ColorLookupTable.TABLE_FILE));
+    }
+
+    /**
+     * Calibrates the colour table from a box around the bobber and saves it.
+     *
+     * @param bobberBox Absolute screen area around the bobber, e.g. drawn by the user or around a confirmed detection.
+     */
+    public void calibrateColors(Rectangle bobberBox) {
+        Settings current = config.getSettings();
+        Rectangle roi = getSearchRoi(current, getScreenBounds(current));
+        Rectangle area = roi.union(bobberBox);
+        ScreenCaptureService.Frame frame = frameSource.capture(area, 0);
+        colorTable = ColorLookupTable.calibrate(frame.getPixels(), frame.offsetOf(area.x, area.y), frame.getScanline(),
+                area.width, area.height, bobberBox.x - area.x, bobberBox.y - area.y, bobberBox.width, bobberBox.height);
+        colorTable.save(config.resolve(ColorLookupTable.TABLE_FILE));
+    }
+
+    /**
+     * Calibrates the colour table from a box around a confirmed detection and saves it.
+     */
+    public void calibrateColors(DetectionResult.Candidate candidate) {
+        // Blob area is in step-2 samples, each covering 2x2 pixels
+        int side = Math.max(16, (int) Math.ceil(Math.sqrt(candidate.getArea() * 4.0)) + 4);
+        calibrateColors(new Rectangle(candidate.getX() - side / 2, candidate.getY() - side / 2, side, side));
+    }
+
+    private PixelScorer getScorer() {
+        ColorLookupTable table = colorTable;
+        if (table != null && settings.isUseColorTable()) {
+            return table;
         }
+        return PixelScorer.REDNESS;
     }
 
-    public Point findBobber() {
-        int screenIdx = config.getScreenIndex();
-        GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
-        Rectangle screenBounds;
-        if (screenIdx >= 0 && screenIdx < screens.length) {
-            screenBounds = screens[screenIdx].getDefaultConfiguration().getBounds();
-        } else {
-            screenBounds = screens[0].getDefaultConfiguration().getBounds();
+    public DetectionResult findBobber() {
+        return findBobber(config.getSettings());
+    }
+
+    /**
+     * Searches with the given settings snapshot, so one search never mixes old and new settings.
+     */
+    public DetectionResult findBobber(Settings settings) {
+        this.settings = settings;
+        expandingSearch.dropFreshFrameStage();
+        Rectangle screenBounds = getScreenBounds(settings);
+        Rectangle roi = getSearchRoi(settings, screenBounds);
+
+        DetectionResult result = searchPrimary(roi);
+        if (!result.isFound() && settings.isExpandingSearch()) {
+            result = expandingSearch.search(roi, screenBounds, result);
         }
+        return result;
+    }
+
+    /**
+     * Whether the last {@link #findBobber(Settings)} left the expanding search's fresh-frame stage to run, see
+     * {@link ExpandingSearch#searchFreshFrame}.
+     */
+    public boolean hasFreshFrameSearch() {
+        return expandingSearch.hasFreshFrameStage();
+    }
+
+    /**
+     * Searches a fresh frame for the last search that came up empty, once the splash had time to settle.
+     */
+    public DetectionResult findBobberInFreshFrame(DetectionResult missed) {
+        return expandingSearch.searchFreshFrame(missed);
+    }
 
+    private Rectangle getScreenBounds(Settings settings) {
+        Rectangle screenBounds = frameSource.getScreenBounds(settings.getScreenIndex());
+        return screenBounds != null ? screenBounds : frameSource.getScreenBounds(0);
+    }
+
+    private static Rectangle getSearchRoi(Settings settings, Rectangle screenBounds) {
         // Define ROI: use configured ROI if available, otherwise use default
-        Rectangle roi = config.getRoi();
+        Rectangle roi = settings.getRoi();
         if (roi == null) {
             int width = (int) (screenBounds.width * 0.5);
             int height = (int) (screenBounds.height * 0.4);
@@ -37,39 +120,163 @@ public class BobberFinder {
             int y = screenBounds.y + (screenBounds.height - height) / 2 - (int) (screenBounds.height * 0.05);
             roi = new Rectangle(x, y, width, height);
         }
+        return roi;
+    }
 
-        System.out.println("[DEBUG] Capturing ROI: " + roi);
-        BufferedImage screenshot = robot.createScreenCapture(roi);
-
-        // Scan for the most "bobber-like" pixel
-        // Bobbers often have a bright red top.
-        Point bestPoint = null;
-        double maxRedness = 0;
-
-        for (int i = 0; i < screenshot.getWidth(); i += 2) { // Step 2 for performance
-            for (int j = 0; j < screenshot.getHeight(); j += 2) {
-                int rgb = screenshot.getRGB(i, j);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                // Redness score: Red component relative to others
-                if (r > 0 && r > g * 1.5 && r > b * 1.5) {
-                    double redness = r - (g + b) / 2.0;
-                    if (redness > maxRedness) {
-                        maxRedness = redness;
-                        bestPoint = new Point(roi.x + i, roi.y + j);
-                    }
+    private DetectionResult searchPrimary(Rectangle roi) {
+        if (settings.isAdaptiveRoi()) {
+            heatmap.bind(roi);
+            Rectangle window = heatmap.getSearchWindow();
+            if (window != null && !window.equals(roi)) {
+                Log.debug(() -> "Searching learned window " + window + " from " + heatmap.getSampleCount() + " catches");
+                DetectionResult result = detectIn(window, 2, 0);
+                if (result.isFound()) {
+                    return result;
                 }
+                Log.debug("Learned window came up empty, searching full ROI.");
+            }
+        }
+        return detectIn(roi, 2, 0);
+    }
+
+    /**
+     * Records where a catch was confirmed, so later searches can narrow down to where the bobber usually lands.
+     */
+    public void recordCatch(Point position) {
+        if (settings.isAdaptiveRoi()) {
+            heatmap.record(position);
+        }
+    }
+
+    /**
+     * Saves what was learned since the last save, e.g. catches the heatmap has not written yet.
+     */
+    public void flush() {
+        heatmap.flush();
+    }
+
+    /**
+     * Fallback counters of the expanding search, for the session report.
+     */
+    public ExpandingSearch getExpandingSearch() {
+        return expandingSearch;
+    }
+
+    /**
+     * Searches one area, sampling every {@code step} pixels and reusing a captured frame up to {@code maxFrameAgeMs} old.
+     */
+    DetectionResult detectIn(Rectangle roi, int step, long maxFrameAgeMs) {
+        return detectIn(roi, step, maxFrameAgeMs, Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #detectIn(Rectangle, int, long)}, but the scan stops once {@link System#nanoTime()} passes
+     * {@code deadlineNanos} and returns what it found in the part it covered.
+     */
+    DetectionResult detectIn(Rectangle roi, int step, long maxFrameAgeMs, long deadlineNanos) {
+        Log.debug(() -> "Capturing ROI: " + roi + " (step " + step + ")");
+        long scanStart = System.nanoTime();
+        ScreenCaptureService.Frame frame = frameSource.capture(roi, maxFrameAgeMs);
+
+        List<DetectionResult.Candidate> candidates = new ArrayList<>();
+        PixelScorer scorer = getScorer();
+        int[] pixels = frame.getPixels();
+        int offset = frame.offsetOf(roi.x, roi.y);
+        int scanline = frame.getScanline();
+
+        if (settings.getDetectionMode() == DetectionMode.BLOB) {
+            // Score connected red blobs so a single hot pixel of UI or spell effect can't win
+            blobDetector.detect(scorer, pixels, offset, scanline, roi.width, roi.height, step, deadlineNanos);
+            for (int i = 0; i < blobDetector.getCandidateCount(); i++) {
+                candidates.add(new DetectionResult.Candidate(roi.x + blobDetector.getX(i), roi.y + blobDetector.getY(i),
+                        blobDetector.getScore(i), blobDetector.getArea(i)));
+            }
+            lastPixelsExamined = RednessScanner.samples(roi.width, roi.height, step);
+        } else {
+            // Scan for the most "bobber-like" pixel
+            // Bobbers often have a bright red top.
+            if (deadlineNanos == Long.MAX_VALUE) {
+                scanPeak(scorer, pixels, offset, scanline, roi, step, candidates);
+            } else {
+                scanPeakBanded(scorer, pixels, offset, scanline, roi, step, deadlineNanos, candidates);
+            }
+        }
+
+        DetectionResult result = new DetectionResult(candidates, roi, System.nanoTime() - scanStart, lastPixelsExamined);
+        if (result.isFound()) {
+            Log.debug(() -> "Found bobber candidate " + result.getBest() + " (" + candidates.size() + " candidates)");
+        } else {
+            Log.debug("No bobber candidate found.");
+        }
+        Log.debug(() -> "Pixels examined: " + lastPixelsExamined + " of " + (long) roi.width * roi.height + " in " + String.format("%.2f", result.getScanTimeMs()) + "ms");
+
+        return result;
+    }
+
+    private void scanPeak(PixelScorer scorer, int[] pixels, int offset, int scanline, Rectangle roi, int step,
+                          List<DetectionResult.Candidate> out) {
+        ScanMode mode = settings.getScanMode();
+        if (mode == ScanMode.PYRAMID && step == 2) {
+            pyramidSearch.search(scorer, pixels, offset, scanline, roi.width, roi.height);
+            lastPixelsExamined = pyramidSearch.getPixelsExamined();
+            for (int i = 0; i < pyramidSearch.getCandidateCount(); i++) {
+                out.add(toCandidate(pyramidSearch.getCandidate(i), roi));
             }
+            return;
         }
 
-        if (bestPoint != null) {
-            System.out.println("[DEBUG] Found bobber candidate at (" + bestPoint.x + ", " + bestPoint.y + ") with redness " + maxRedness);
+        long best;
+        if (mode == ScanMode.PARALLEL) {
+            best = parallelScan.scan(scorer, pixels, offset, scanline, roi.width, roi.height, step);
+        } else if (scorer == PixelScorer.REDNESS) {
+            best = RednessScanner.peakScanner().scan(pixels, offset, scanline, roi.width, roi.height, step);
         } else {
-            System.out.println("[DEBUG] No bobber candidate found.");
+            best = RednessScanner.scan(scorer, pixels, offset, scanline, roi.width, roi.height, step);
+        }
+        lastPixelsExamined = RednessScanner.samples(roi.width, roi.height, step);
+        if (best != RednessScanner.NONE) {
+            out.add(toCandidate(best, roi));
+        }
+    }
+
+    /**
+     * Peak scan in bands of rows with the configured scan mode, checking the deadline between bands. Only the best
+     * candidate is kept.
+     */
+    private void scanPeakBanded(PixelScorer scorer, int[] pixels, int offset, int scanline, Rectangle roi, int step,
+                                long deadlineNanos, List<DetectionResult.Candidate> out) {
+        List<DetectionResult.Candidate> band = new ArrayList<>(1);
+        DetectionResult.Candidate best = null;
+        long examined = 0;
+        for (int y0 = 0; y0 < roi.height; y0 += DEADLINE_BAND_ROWS) {
+            if (y0 > 0 && System.nanoTime() - deadlineNanos > 0) break;
+            Rectangle rows = new Rectangle(roi.x, roi.y + y0, roi.width, Math.min(DEADLINE_BAND_ROWS, roi.height - y0));
+            band.clear();
+            scanPeak(scorer, pixels, offset + y0 * scanline, scanline, rows, step, band);
+            examined += lastPixelsExamined;
+            for (DetectionResult.Candidate candidate : band) {
+                if (best == null || candidate.getScore() > best.getScore()) best = candidate;
+            }
+        }
+        lastPixelsExamined = examined;
+        if (best != null) {
+            out.add(best);
         }
+    }
+
+    private static DetectionResult.Candidate toCandidate(long packed, Rectangle roi) {
+        return new DetectionResult.Candidate(roi.x + RednessScanner.xOf(packed), roi.y + RednessScanner.yOf(packed),
+                RednessScanner.scoreOf(packed) / 2.0, 1);
+    }
+
+    public enum DetectionMode {
+        BLOB,
+        PEAK
+    }
 
-        return bestPoint;
+    public enum ScanMode {
+        SEQUENTIAL,
+        PARALLEL,
+        PYRAMID
     }
 }
@@ -1,51 +1,151 @@
 package no.kess.utility.engine;
 
 import no.kess.utility.audio.AudioMonitor;
+import no.kess.utility.audio.LevelHistory;
+import no.kess.utility.audio.LevelSource;
 import no.kess.utility.config.AppConfig;
+import no.kess.utility.config.Settings;
+import no.kess.utility.history.CastHistory;
+import no.kess.utility.history.CastRecord;
+import no.kess.utility.input.InputSink;
+import no.kess.utility.input.NativeInput;
 import no.kess.utility.input.NativeKeyboard;
-import no.kess.utility.input.NativeMouse;
 import no.kess.utility.ui.DetectionOverlay;
+import no.kess.utility.util.Clock;
 import no.kess.utility.util.Humanizer;
+import no.kess.utility.util.LatencyHistogram;
+import no.kess.utility.util.Log;
 
 import java.awt.*;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
+/**
+ * Runs the fishing cycle as a state machine on a single scheduler thread.
+ * <p>
+ * A state does its work in short steps and then either schedules its next step or waits for an event: a splash from the
+ * {@link LevelSource}, a status change from the {@link StatusBridge}, or its own timeout. Every transition goes through
+ * {@link #enter(State)}, which bumps an epoch; steps and events carry the epoch they were scheduled in and are dropped
+ * once it is stale, so a late timeout or event can never act on a newer state. Stopping also runs on the scheduler
+ * thread, which makes cancellation deterministic. Waits are scheduled steps, so no thread sleeps in a state; only the
+ * input calls themselves block the scheduler briefly, for a key's dwell or a mouse curve.
+ * <p>
+ * Pixels, the addon status, audio levels, input and time all come in through interfaces, so the same engine drives the
+ * game or a simulated one (see {@code no.kess.utility.sim}).
+ */
 public class BotEngine {
+    private static final long STOP_KEY_POLL_MS = 100;
+    private static final long CAST_CONFIRM_TIMEOUT_MS = 2000;
+    private static final long LISTEN_TIMEOUT_MS = 22000;
+    private static final long LOOT_CONFIRM_TIMEOUT_MS = 3000;
+    // The addon needs a moment after the cast before it reports fishing
+    private static final long FISHING_GRACE_MS = 1000;
+    // Each session appends one line per phase
+    private static final String LATENCY_FILE = "latency.csv";
+    private static final String HISTORY_FILE = "utility.history";
+    // Buffered casts are lost in a crash, so a partial block goes to disk at least this often
+    private static final long HISTORY_FLUSH_MS = 60_000;
+    private static final int[] LOGOUT_COMMAND = {KeyEvent.VK_SLASH, KeyEvent.VK_L, KeyEvent.VK_O, KeyEvent.VK_G,
+            KeyEvent.VK_O, KeyEvent.VK_U, KeyEvent.VK_T};
+
     private final AppConfig config;
     private final Consumer<String> statusListener;
     private final Runnable onStop;
-    private final AudioMonitor audioMonitor;
-    private final PixelBridge pixelBridge;
+    private final FrameSource frameSource;
+    private final StatusBridge bridge;
+    private final LevelSource levelSource;
+    private final InputSink input;
+    private final Clock clock;
+    private final Consumer<PixelBridge.Status> bridgeListener = this::onBridgeStatus;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private final CastHistory history;
+    // Flushes the history if the JVM exits mid-session, registered from start() until finish()
+    private final Thread historyFlushHook;
     private volatile boolean running = false;
-    private Thread botThread;
+    private volatile State state;
+    private Clock.Scheduler scheduler;
+    private volatile BobberFinder bobberFinder;
 
-    private int sessionThrows = 0;
-    private int sessionFishCaught = 0;
+    private volatile int sessionThrows = 0;
+    private volatile int sessionFishCaught = 0;
     private long startTime = 0;
-    private long stopTime = 0;
-    private StopReason stopReason = StopReason.MANUAL;
-
-    public void start() {
+    private volatile long stopTime = 0;
+    private volatile StopReason stopReason = StopReason.MANUAL;
+
+    // Only touched on the scheduler thread once started
+    private long epoch;
+    private long stateEnteredAt;
+    private boolean finished;
+    private Settings settings;
+    private int screenIdx;
+    private long lastLureTime;
+    private long castTime;
+    private final CastRecord cycle = new CastRecord();
+    private LevelHistory.Signal listenSignal;
+    private long listenStart;
+    private double listenThreshold;
+    // Clock.nanoTime() marks for the latency phases
+    private long castNanos;
+    private long splashNanos;
+    private long interactNanos;
+    private DetectionResult detection;
+    private int candidateIdx;
+    private boolean confirmedTooFar;
+    private PixelBridge.Status beforeInteract;
+    private LevelHistory.Subscription splashSubscription;
+
+    public synchronized void start() {
         if (running) return;
-        System.out.println("[DEBUG] Starting BotEngine...");
+        Log.info("Starting BotEngine...");
         sessionThrows = 0;
         sessionFishCaught = 0;
-        startTime = System.currentTimeMillis();
+        startTime = clock.currentTimeMillis();
         stopTime = 0;
         stopReason = StopReason.MANUAL;
+        state = null;
+        epoch = 0;
+        finished = false;
+        lastLureTime = 0;
+        castNanos = 0;
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
         running = true;
-        startStopKeyListener();
-        botThread = new Thread(this::botLoop, "BotLoop");
-        botThread.start();
+        addHistoryFlushHook();
+        scheduler = clock.newScheduler("BotEngine");
+        scheduler.execute(() -> runStep(0, this::initialize));
+    }
+
+    public BotEngine(AppConfig config, AudioMonitor audioMonitor, PixelBridge pixelBridge, Consumer<String> statusListener,
+                     Runnable onStop) {
+        this(config, ScreenCaptureService.getInstance(), pixelBridge, audioMonitor, new NativeInput(), Clock.SYSTEM,
+                statusListener, onStop);
     }
 
-    public BotEngine(AppConfig config, AudioMonitor audioMonitor, Consumer<String> statusListener, Runnable onStop) {
+    public BotEngine(AppConfig config, FrameSource frameSource, StatusBridge bridge, LevelSource levelSource,
+                     InputSink input, Clock clock, Consumer<String> statusListener, Runnable onStop) {
         this.config = config;
-        this.audioMonitor = audioMonitor;
+        this.frameSource = frameSource;
+        this.bridge = bridge;
+        this.levelSource = levelSource;
+        this.input = input;
+        this.clock = clock;
         this.statusListener = statusListener;
         this.onStop = onStop;
-        this.pixelBridge = new PixelBridge();
+        this.history = new CastHistory(config.resolve(HISTORY_FILE));
+        this.historyFlushHook = new Thread(history::flush, "CastHistoryFlush");
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
     }
 
     public int getSessionThrows() {
@@ -56,13 +156,26 @@ public class BotEngine {
         return sessionFishCaught;
     }
 
+    /**
+     * Per-stage counters of the bobber fallback search for the last session, or an empty string before any session.
+     */
+    public String getFallbackSearchSummary() {
+        BobberFinder finder = bobberFinder;
+        return finder == null ? "" : finder.getExpandingSearch().getSummary();
+    }
+
+    public int getRecastsSaved() {
+        BobberFinder finder = bobberFinder;
+        return finder == null ? 0 : finder.getExpandingSearch().getRecastsSaved();
+    }
+
     public StopReason getStopReason() {
         return stopReason;
     }
 
     public long getSessionDurationMs() {
         if (startTime == 0) return 0;
-        long end = (running || stopTime == 0) ? System.currentTimeMillis() : stopTime;
+        long end = (running || stopTime == 0) ? clock.currentTimeMillis() : stopTime;
         return end - startTime;
     }
 
@@ -79,343 +192,636 @@ public class BotEngine {
         return sb.toString();
     }
 
-    private void botLoop() {
-        try {
-            BobberFinder bobberFinder = new BobberFinder(config);
-            int screenIdx = config.getScreenIndex();
-            GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
-            int offsetX = 0;
-            int offsetY = 0;
-            if (screenIdx >= 0 && screenIdx < screens.length) {
-                Rectangle bounds = screens[screenIdx].getDefaultConfiguration().getBounds();
-                offsetX = bounds.x;
-                offsetY = bounds.y;
-                System.out.println("[DEBUG] Using screen " + screenIdx + " at offset (" + offsetX + ", " + offsetY + ")");
-            }
-            pixelBridge.setOffset(offsetX, offsetY);
+    /**
+     * Every cast of every session, for aggregate queries.
+     */
+    public CastHistory getHistory() {
+        return history;
+    }
 
-            updateStatus("Starting...");
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies[phase.ordinal()];
+    }
 
-            // Give time to switch window
-            for (int i = 3; i > 0; i--) {
-                if (!running) return;
-                updateStatus("Starting in " + i + "...");
-                Humanizer.sleep(1000, 0);
-            }
+    /**
+     * p50/p95/p99 of every phase of the last session, one line each.
+     */
+    public String getLatencySummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (sb.length() > 0) sb.append("\n");
+            sb.append(phase.getLabel()).append(": ").append(getLatency(phase).getSummary());
+        }
+        return sb.toString();
+    }
 
-            long lastLureTime = 0;
-
-            while (running) {
-                // Check time limit
-                int limitMinutes = config.getRunTimeLimit();
-                if (limitMinutes > 0) {
-                    long elapsedMs = System.currentTimeMillis() - startTime;
-                    if (elapsedMs > limitMinutes * 60 * 1000L) {
-                        updateStatus("Time Limit Reached");
-                        stopReason = StopReason.TIME_LIMIT;
-                        logout();
-                        running = false;
-                        break;
-                    }
-                }
+    /**
+     * @return The state the cycle is in, or null before the first cast and after a stop.
+     */
+    public State getState() {
+        return running ? state : null;
+    }
 
-                lastLureTime = applyLureIfNeeded(lastLureTime);
-                if (!running) break;
+    public synchronized void stop() {
+        Log.info("Stopping BotEngine...");
+        running = false;
+        if (scheduler != null) {
+            submit(this::finish);
+        }
+    }
 
-                // 2. Safety Check (Optical Bridge)
-                PixelBridge.Status status = pixelBridge.getStatus();
+    public boolean isRunning() {
+        return running;
+    }
 
-                if (status.isBagsFull()) {
-                    updateStatus("Bags Full");
-                    stopReason = StopReason.BAGS_FULL;
-                    if (config.isLogoutAfterFullBag()) {
-                        logout();
-                    }
-                    running = false;
-                    break;
-                }
+    private void initialize() {
+        settings = config.getSettings();
+        bobberFinder = new BobberFinder(config, frameSource, clock);
+        screenIdx = settings.getScreenIndex();
+        Rectangle bounds = frameSource.getScreenBounds(screenIdx);
+        int offsetX = 0;
+        int offsetY = 0;
+        if (bounds != null) {
+            offsetX = bounds.x;
+            offsetY = bounds.y;
+            Log.info("Using screen " + screenIdx + " at offset (" + bounds.x + ", " + bounds.y + ")");
+        }
+        bridge.setOffset(offsetX, offsetY);
+        // Status changes drive the waiting states, so the sampler has to run
+        bridge.start();
+        bridge.addListener(bridgeListener);
 
-                if (status.isCaught()) {
-                    System.out.println("[DEBUG] Addon reported successful catch via pixel bridge.");
-                }
+        scheduler.scheduleAtFixedRate(this::checkStopKey, STOP_KEY_POLL_MS);
+        scheduler.scheduleAtFixedRate(history::flush, HISTORY_FLUSH_MS);
 
-                // 2. Cast Line
-                if (!running) break;
-                handlePreCastCleanup(status);
-                if (!running) break;
-
-                updateStatus("Casting...");
-                long castTime = performCast();
-
-                if (!verifyCastConfirmation() || !running) {
-                    if (running) {
-                        System.out.println("[DEBUG] Failed to confirm fishing state after cast. Recasting in next loop.");
-                        updateStatus("Cast Failed");
-                        Humanizer.sleep(1000, 500);
-                    }
-                    continue;
-                }
+        updateStatus("Starting...");
+        // Give time to switch window
+        countdown(3);
+    }
 
-                // 2.5. Verify Bobber Location & Move Mouse
-                if (!running) break;
-                Point bobberPos = waitForBobberAndPrePositionMouse(bobberFinder, screenIdx);
-                if (running && bobberPos == null) {
-                    continue;
-                }
+    private void countdown(int remaining) {
+        if (remaining == 0) {
+            lure();
+            return;
+        }
+        updateStatus("Starting in " + remaining + "...");
+        after(1000, () -> countdown(remaining - 1));
+    }
 
-                if (!running) break;
-
-                // 3. Wait for Splash (Max 22 seconds)
-                boolean fishHooked = waitForSplash(castTime);
-                if (!running) break;
-
-                // 4. React
-                if (fishHooked && running) {
-                    performCatchAndConfirm();
-                    if (!running) break;
-                    Humanizer.sleep(2000, 500);
-                } else if (running) {
-                    updateStatus("Timeout/Cancelled");
-                    // Ensure we are really not fishing anymore before next loop
-                    NativeKeyboard.sendKey(NativeKeyboard.SCANCODE_ESC);
-                    Humanizer.sleep(1000, 200);
-                }
-            }
-        } catch (Exception e) {
-            if (running) { // Only log errors if we were supposed to be running
-                e.printStackTrace();
-                updateStatus("Error: " + e.getMessage());
-                stopReason = StopReason.ERROR;
+    private void checkStopKey() {
+        // Follows the settings snapshot, so a stop key changed on disk applies from the next cast
+        if (running && input.isKeyPressed(settings.getStopKey())) {
+            Log.info("Stop key pressed! Stopping bot...");
+            stop();
+        }
+    }
+
+    /**
+     * The single transition point: every state change, and so every per-state timing, passes through here.
+     */
+    private void enter(State next) {
+        long now = clock.currentTimeMillis();
+        if (state != null) {
+            Log.debug(() -> state + " -> " + next + " after " + (now - stateEnteredAt) + "ms");
+        }
+        cancelSplashSubscription();
+        epoch++;
+        state = next;
+        stateEnteredAt = now;
+    }
+
+    /**
+     * Runs a step of the current state after a delay, unless the state has been left by then.
+     */
+    private void after(long delayMs, Runnable step) {
+        long expected = epoch;
+        scheduler.schedule(() -> runStep(expected, step), delayMs);
+    }
+
+    /**
+     * Hands a step to the scheduler from another thread.
+     */
+    private void submit(Runnable step) {
+        try {
+            scheduler.execute(step);
+        } catch (RejectedExecutionException e) {
+            // Already shut down, nothing left to do
+        }
+    }
+
+    private void runStep(long expected, Runnable step) {
+        if (!running || expected != epoch) return;
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            Log.error("Bot step failed in state " + state, e);
+            updateStatus("Error: " + e.getMessage());
+            stopReason = StopReason.ERROR;
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (finished) return;
+        finished = true;
+        running = false;
+        if (state != null) {
+            enter(null);
+        }
+        bridge.removeListener(bridgeListener);
+        bridge.stop();
+        stopTime = clock.currentTimeMillis();
+        if (cycle.isOpen()) {
+            cycle.end(stopTime, CastRecord.Outcome.ABORTED);
+            history.append(cycle);
+        }
+        history.flush();
+        removeHistoryFlushHook();
+        // Null if the session stopped before initialize() got to create it
+        BobberFinder finder = bobberFinder;
+        if (finder != null) {
+            finder.flush();
+        }
+        exportLatencies();
+        updateStatus("Stopped");
+        if (onStop != null) {
+            onStop.run();
+        }
+        // Drops the stop key check and any step still pending
+        scheduler.shutdownNow();
+    }
+
+    private void addHistoryFlushHook() {
+        // The window can close before finish() has run on the scheduler
+        try {
+            Runtime.getRuntime().addShutdownHook(historyFlushHook);
+        } catch (IllegalArgumentException e) {
+            // Still registered, the last session's finish() has not run yet
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down
+        }
+    }
+
+    private void removeHistoryFlushHook() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(historyFlushHook);
+        } catch (IllegalStateException e) {
+            // The JVM is shutting down and the hook is running or has run
+        }
+    }
+
+    private void onBridgeStatus(PixelBridge.Status status) {
+        if (!running) return;
+        // Whatever state the scheduler is in when it gets to the change, a failure stops the bot like any step
+        submit(() -> runStep(epoch, () -> {
+            seen(status);
+            if (state == State.CONFIRM_CAST && status.isFishing()) {
+                castConfirmed();
+            } else if (state == State.LISTEN) {
+                checkStillFishing(status);
+            } else if (state == State.CONFIRM_LOOT) {
+                checkLoot(status);
             }
-            running = false;
-        } finally {
-            stopTime = System.currentTimeMillis();
-            updateStatus("Stopped");
-            if (onStop != null) {
-                onStop.run();
+        }));
+    }
+
+    private void lure() {
+        enter(State.LURE);
+        // One snapshot per cycle, settings edited on disk take effect from the next cast
+        settings = config.getSettings();
+        // Check time limit
+        int limitMinutes = settings.getRunTimeLimit();
+        if (limitMinutes > 0) {
+            long elapsedMs = clock.currentTimeMillis() - startTime;
+            if (elapsedMs > limitMinutes * 60 * 1000L) {
+                updateStatus("Time Limit Reached");
+                stopReason = StopReason.TIME_LIMIT;
+                logoutThenFinish();
+                return;
             }
         }
-    }
 
-    private void startStopKeyListener() {
-        new Thread(() -> {
-            int stopKeySC = config.getStopKey();
-            int stopKeyVK = NativeKeyboard.User32Ext.INSTANCE.MapVirtualKey(stopKeySC, 1); // MAPVK_VSC_TO_VK = 1
-            System.out.println("[DEBUG] Stop key listener started. Monitoring VK: 0x" + Integer.toHexString(stopKeyVK));
-            while (running && !Thread.currentThread().isInterrupted()) {
-                if (NativeKeyboard.isKeyPressed(stopKeyVK)) {
-                    System.out.println("[DEBUG] Stop key pressed! Stopping bot...");
-                    stop();
-                    break;
-                }
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    break;
+        if (settings.isLureEnabled()) {
+            long currentTime = clock.currentTimeMillis();
+            long intervalMs = settings.getLureInterval() * 60 * 1000L;
+            if (lastLureTime == 0 || (currentTime - lastLureTime) >= intervalMs) {
+                if (settings.getLureKey() != 0) {
+                    Log.info("Applying lure before fishing...");
+                    updateStatus("Applying Lure...");
+                    input.sendKey(settings.getLureKey());
+                    // Wait 7 seconds for lure application
+                    after(Humanizer.getDelay(7000, 500), () -> {
+                        lastLureTime = clock.currentTimeMillis();
+                        cast();
+                    });
+                    return;
                 }
+                Log.debug("Lure enabled but no key bound.");
             }
-            System.out.println("[DEBUG] Stop key listener finished.");
-        }, "StopKeyListener").start();
+        }
+        cast();
     }
 
-    public void stop() {
-        System.out.println("[DEBUG] Stopping BotEngine...");
-        running = false;
-        if (botThread != null) {
-            botThread.interrupt();
+    private void cast() {
+        enter(State.CAST);
+        // Safety Check (Optical Bridge)
+        if (bridge.isFrozen()) {
+            // Game paused, minimized or loading: the state on screen is stale and input would go nowhere
+            updateStatus("Game not drawing - Waiting");
+            after(1000, this::lure);
+            return;
+        }
+        PixelBridge.Status status = bridge.getStatus();
+        if (status.getFreeBagSlots() >= 0) {
+            Log.debug(() -> "Free bag slots: " + status.getFreeBagSlots());
         }
-    }
 
-    public boolean isRunning() {
-        return running;
+        if (status.isBagsFull()) {
+            updateStatus("Bags Full");
+            stopReason = StopReason.BAGS_FULL;
+            if (settings.isLogoutAfterFullBag()) {
+                logoutThenFinish();
+            } else {
+                finish();
+            }
+            return;
+        }
+
+        if (status.isCaught()) {
+            Log.debug("Addon reported successful catch via pixel bridge.");
+        }
+
+        if (status.isFishing()) {
+            Log.debug("Addon reported 'isFishing' BEFORE cast. Cancelling to ensure fresh state.");
+            input.sendKey(NativeKeyboard.SCANCODE_ESC);
+            after(Humanizer.getDelay(800, 200), this::performCast);
+            return;
+        }
+        performCast();
     }
 
-    private long performCast() {
-        int castKey = config.getCastKey();
-        System.out.println("[DEBUG] Casting line using scan code: 0x" + Integer.toHexString(castKey));
+    private void performCast() {
+        updateStatus("Casting...");
+        int castKey = settings.getCastKey();
+        Log.debug(() -> "Casting line using scan code: 0x" + Integer.toHexString(castKey));
         sessionThrows++;
         config.incrementThrows();
-        NativeKeyboard.sendKey(castKey);
-        return System.currentTimeMillis();
+        input.sendKey(castKey);
+        castTime = clock.currentTimeMillis();
+        cycle.begin(castTime);
+        long now = clock.nanoTime();
+        if (castNanos != 0) {
+            record(Phase.FULL_CYCLE, castNanos);
+        }
+        castNanos = now;
+        confirmCast();
     }
 
-    private void updateStatus(String status) {
-        if (statusListener != null) {
-            statusListener.accept(status);
+    private void confirmCast() {
+        enter(State.CONFIRM_CAST);
+        if (seen(bridge.getStatus()).isFishing()) {
+            castConfirmed();
+            return;
         }
+        after(CAST_CONFIRM_TIMEOUT_MS, () -> {
+            Log.debug("Failed to confirm fishing state after cast. Recasting in next loop.");
+            updateStatus("Cast Failed");
+            recover(CastRecord.Outcome.CAST_FAILED, false, Humanizer.getDelay(1000, 500));
+        });
     }
 
-    private long applyLureIfNeeded(long lastLureTime) {
-        if (!config.isLureEnabled()) return lastLureTime;
+    private void castConfirmed() {
+        record(Phase.CAST_TO_FISHING, castNanos);
+        cycle.markFishing(clock.currentTimeMillis());
+        Log.debug("Addon confirmed 'isFishing' state.");
+        locateBobber();
+    }
+
+    private void locateBobber() {
+        enter(State.LOCATE_BOBBER);
+        updateStatus("Searching for bobber...");
+        // Wait for the splash to subside and bobber to appear/settle
+        after(Humanizer.getDelay(1500, 250), () -> {
+            long scanStart = clock.nanoTime();
+            detection = bobberFinder.findBobber(settings);
+            record(Phase.BOBBER_SCAN, scanStart);
+            if (!detection.isFound() && bobberFinder.hasFreshFrameSearch()) {
+                // The last fallback stage wants a fresh frame once the splash has settled
+                after(ExpandingSearch.FRESH_FRAME_SETTLE_MS, () -> {
+                    long freshStart = clock.nanoTime();
+                    detection = bobberFinder.findBobberInFreshFrame(detection);
+                    record(Phase.BOBBER_SCAN, freshStart);
+                    bobberSearched();
+                });
+                return;
+            }
+            bobberSearched();
+        });
+    }
 
-        long currentTime = System.currentTimeMillis();
-        long intervalMs = config.getLureInterval() * 60 * 1000L;
+    private void bobberSearched() {
+        cycle.markScan(detection.getScanTimeNanos());
+        if (!detection.isFound()) {
+            Log.debug("Bobber not found in search area. Recasting...");
+            updateStatus("Bobber not found - Recasting");
+            recover(CastRecord.Outcome.NOT_FOUND, true, Humanizer.getDelay(1000, 500));
+            return;
+        }
+        record(Phase.CAST_TO_BOBBER, castNanos);
+        Point bobberPos = detection.getBest().getPosition();
+        cycle.markBobber(clock.currentTimeMillis(), detection.getBest().getScore(), bobberPos.x, bobberPos.y);
 
-        if (lastLureTime == 0 || (currentTime - lastLureTime) >= intervalMs) {
-            if (config.getLureKey() != 0) {
-                System.out.println("[DEBUG] Applying lure before fishing...");
-                updateStatus("Applying Lure...");
-                NativeKeyboard.sendKey(config.getLureKey());
-                // Wait 7 seconds for lure application
-                Humanizer.sleep(7000, 500);
-                return System.currentTimeMillis();
+        // Visual feedback
+        if (settings.isShowDetectionPoint()) {
+            DetectionOverlay.showAt(bobberPos);
+        }
+
+        // Move mouse towards bobber with reaction time and gaussian blur
+        int reactionDelay = settings.getReactionTime();
+        Log.debug(() -> "Bobber found. Moving mouse in " + reactionDelay + "ms...");
+        after(Humanizer.getDelay(reactionDelay, 75), () -> {
+            moveMouseToBobber(bobberPos, screenIdx);
+            listen();
+        });
+    }
+
+    private void listen() {
+        enter(State.LISTEN);
+        updateStatus("Listening...");
+        LevelHistory.Signal signal = settings.isBandSplashDetection() ? LevelHistory.Signal.SPLASH_BAND : LevelHistory.Signal.VOLUME;
+        double staticThreshold = settings.getSplashThreshold();
+        double dynamicThreshold = levelSource.getDynamicThreshold(signal);
+        double threshold = staticThreshold;
+        if (settings.isAdaptiveThreshold()) {
+            if (dynamicThreshold > 0) {
+                threshold = dynamicThreshold;
             } else {
-                System.out.println("[DEBUG] Lure enabled but no key bound.");
+                Log.debug("Noise floor not known yet, using the static threshold.");
             }
         }
-        return lastLureTime;
+        double used = threshold;
+        Log.debug(() -> "Listening for splash (" + signal + ", threshold: " + used
+                + ", static: " + staticThreshold + ", dynamic: " + dynamicThreshold + ")...");
+        listenSignal = signal;
+        listenThreshold = threshold;
+        listenStart = clock.currentTimeMillis();
+
+        // Fires the moment the capture thread sees a crossing, or right away for a peak already in the history
+        long expected = epoch;
+        splashSubscription = levelSource.onLevelAbove(signal, threshold, listenStart,
+                level -> {
+                    long heardAt = clock.nanoTime();
+                    submit(() -> runStep(expected, () -> {
+                        splashNanos = heardAt;
+                        cycle.markSplash(clock.currentTimeMillis() - (clock.nanoTime() - heardAt) / 1_000_000);
+                        recordListen();
+                        Log.info("Splash detected! " + signal + ": " + level + " > Threshold: " + used);
+                        updateStatus("Splash Detected!");
+                        candidateIdx = 0;
+                        confirmedTooFar = false;
+                        interact();
+                    }));
+                });
+        after(Math.max(1, castTime + LISTEN_TIMEOUT_MS - listenStart), this::noSplash);
+
+        // Also check if addon stopped fishing unexpectedly (e.g. cancelled); later changes arrive as bridge events
+        long graceLeft = castTime + FISHING_GRACE_MS - listenStart;
+        if (graceLeft > 0) {
+            after(graceLeft, () -> checkStillFishing(bridge.getStatus()));
+        } else {
+            checkStillFishing(bridge.getStatus());
+        }
     }
 
-    private void handlePreCastCleanup(PixelBridge.Status status) {
-        if (status.isFishing()) {
-            System.out.println("[DEBUG] Addon reported 'isFishing' BEFORE cast. Cancelling to ensure fresh state.");
-            NativeKeyboard.sendKey(NativeKeyboard.SCANCODE_ESC);
-            Humanizer.sleep(800, 200);
+    private void checkStillFishing(PixelBridge.Status status) {
+        if (clock.currentTimeMillis() - castTime > FISHING_GRACE_MS && !status.isFishing()) {
+            Log.debug("Addon reported fishing stopped.");
+            noSplash();
         }
     }
 
-    private void performCatchAndConfirm() {
-        int clickDelay = Humanizer.randomInt(200, 500);
-        System.out.println("[DEBUG] Splash reaction click in " + clickDelay + "ms...");
-        Humanizer.sleep(clickDelay, 50);
-        if (!running) return;
+    private void noSplash() {
+        recordListen();
+        updateStatus("Timeout/Cancelled");
+        // Ensure we are really not fishing anymore before next loop
+        recover(CastRecord.Outcome.TIMEOUT, true, Humanizer.getDelay(1000, 200));
+    }
 
-        int interactKey = config.getInteractKey();
-        System.out.println("[DEBUG] Pressing interact key: 0x" + Integer.toHexString(interactKey));
-        NativeKeyboard.sendKey(interactKey);
-        if (!running) return;
+    /**
+     * Keeps the loudest level heard while listening, to compare splashes against the background later.
+     */
+    private void recordListen() {
+        cycle.setAudio(levelSource.maxLevelSince(listenSignal, listenStart), listenThreshold);
+    }
 
-        // Wait for catch confirmation from addon (max 3s)
-        long lootWait = System.currentTimeMillis();
-        boolean confirmedCatch = false;
-        boolean confirmedTooFar = false;
-        while (System.currentTimeMillis() - lootWait < 3000 && running) {
-            PixelBridge.Status s = pixelBridge.getStatus();
-            if (s.isCaught()) {
-                confirmedCatch = true;
-                System.out.println("[DEBUG] Addon confirmed catch!");
-                break;
-            }
-            if (s.isTooFar()) {
-                confirmedTooFar = true;
-                System.out.println("[DEBUG] Addon confirmed 'Too Far' error!");
-                break;
-            }
-            Humanizer.sleep(100, 0);
+    private void interact() {
+        enter(State.INTERACT);
+        if (candidateIdx == 0) {
+            int clickDelay = Humanizer.randomInt(200, 500);
+            Log.debug(() -> "Splash reaction click in " + clickDelay + "ms...");
+            after(Humanizer.getDelay(clickDelay, 50), this::pressInteract);
+        } else {
+            pressInteract();
+        }
+    }
+
+    private void pressInteract() {
+        int interactKey = settings.getInteractKey();
+        beforeInteract = bridge.getStatus();
+        Log.debug(() -> "Pressing interact key: 0x" + Integer.toHexString(interactKey));
+        input.sendKey(interactKey);
+        interactNanos = clock.nanoTime();
+        cycle.markInteract(clock.currentTimeMillis(), candidateIdx);
+        if (candidateIdx == 0) {
+            record(Phase.SPLASH_TO_INTERACT, splashNanos);
         }
+        confirmLoot();
+    }
 
-        if (confirmedCatch) {
+    private void confirmLoot() {
+        enter(State.CONFIRM_LOOT);
+        long expected = epoch;
+        checkLoot(seen(bridge.getStatus()));
+        if (expected == epoch) {
+            after(LOOT_CONFIRM_TIMEOUT_MS, this::giveUpLoot);
+        }
+    }
+
+    /**
+     * The strip protocol counts loots and 'Too Far' errors, so only events after the interact count. The legacy pixel
+     * holds 'Too Far' for 2s, so there on a retry only a catch can confirm the new candidate.
+     */
+    private void checkLoot(PixelBridge.Status status) {
+        boolean acceptTooFar = candidateIdx == 0 || beforeInteract.isExtended();
+        if (status.isCaughtSince(beforeInteract)) {
+            Log.info("Addon confirmed catch!");
+            record(Phase.INTERACT_TO_LOOT, interactNanos);
+            cycle.markLoot(clock.currentTimeMillis());
+            bobberFinder.recordCatch(detection.getCandidates().get(candidateIdx).getPosition());
             sessionFishCaught++;
             config.incrementFishCaught();
             updateStatus("Caught Fish!");
-        } else if (running) {
-            PixelBridge.Status s = pixelBridge.getStatus();
-            if (confirmedTooFar || s.isFishing()) {
-                System.out.println("[DEBUG] Failed to loot. Bobber was too far or interact failed. Cancelling...");
-                updateStatus("Too Far - Cancelling");
-                NativeKeyboard.sendKey(NativeKeyboard.SCANCODE_ESC);
-                Humanizer.sleep(500, 100);
-            } else {
-                updateStatus("Looting...");
+            recover(CastRecord.Outcome.CAUGHT, false, Humanizer.getDelay(2000, 500));
+        } else if (acceptTooFar && status.isTooFarSince(beforeInteract)) {
+            Log.debug("Addon confirmed 'Too Far' error!");
+            confirmedTooFar = true;
+            // Wrong spot, try the next ranked candidate while the fish is still on the line
+            List<DetectionResult.Candidate> candidates = detection.getCandidates();
+            if (candidateIdx + 1 >= candidates.size() || !bridge.getStatus().isFishing()) {
+                giveUpLoot();
+                return;
             }
+            candidateIdx++;
+            Point next = candidates.get(candidateIdx).getPosition();
+            Log.debug(() -> "Trying next bobber candidate " + (candidateIdx + 1) + "/" + candidates.size() + " at (" + next.x + ", " + next.y + ")");
+            updateStatus("Too Far - Trying next candidate");
+            moveMouseToBobber(next, screenIdx);
+            interact();
         }
     }
 
-    private boolean verifyCastConfirmation() {
-        long castWait = System.currentTimeMillis();
-        while (System.currentTimeMillis() - castWait < 2000 && running) {
-            if (pixelBridge.getStatus().isFishing()) {
-                System.out.println("[DEBUG] Addon confirmed 'isFishing' state.");
-                return true;
-            }
-            Humanizer.sleep(100, 0);
+    private void giveUpLoot() {
+        PixelBridge.Status s = bridge.getStatus();
+        if (confirmedTooFar || s.isFishing()) {
+            Log.debug("Failed to loot. Bobber was too far or interact failed. Cancelling...");
+            updateStatus("Too Far - Cancelling");
+            input.sendKey(NativeKeyboard.SCANCODE_ESC);
+            CastRecord.Outcome outcome = confirmedTooFar ? CastRecord.Outcome.TOO_FAR : CastRecord.Outcome.NO_LOOT;
+            recover(outcome, false, Humanizer.getDelay(500, 100) + Humanizer.getDelay(2000, 500));
+        } else {
+            updateStatus("Looting...");
+            recover(CastRecord.Outcome.NO_LOOT, false, Humanizer.getDelay(2000, 500));
         }
-        return false;
     }
 
-    private Point waitForBobberAndPrePositionMouse(BobberFinder bobberFinder, int screenIdx) {
-        updateStatus("Searching for bobber...");
-        // Wait for the splash to subside and bobber to appear/settle
-        Humanizer.sleep(1500, 250);
-        if (!running) return null;
+    /**
+     * Ends the cycle with its outcome and pauses before the next one, optionally cancelling whatever the character is
+     * doing first.
+     */
+    private void recover(CastRecord.Outcome outcome, boolean cancel, long delayMs) {
+        enter(State.RECOVER);
+        if (cycle.isOpen()) {
+            cycle.end(clock.currentTimeMillis(), outcome);
+            history.append(cycle);
+        }
+        if (cancel) {
+            input.sendKey(NativeKeyboard.SCANCODE_ESC);
+        }
+        after(delayMs, this::lure);
+    }
 
-        Point bobberPos = bobberFinder.findBobber();
-        if (bobberPos == null) {
-            System.out.println("[DEBUG] Bobber not found in search area. Recasting...");
-            updateStatus("Bobber not found - Recasting");
-            NativeKeyboard.sendKey(NativeKeyboard.SCANCODE_ESC);
-            Humanizer.sleep(1000, 500);
-            return null;
+    private PixelBridge.Status seen(PixelBridge.Status status) {
+        if (cycle.isOpen()) {
+            int states = 0;
+            if (status.isFishing()) states |= CastRecord.SEEN_FISHING;
+            if (status.isCaught()) states |= CastRecord.SEEN_CAUGHT;
+            if (status.isTooFar()) states |= CastRecord.SEEN_TOO_FAR;
+            if (status.isBagsFull()) states |= CastRecord.SEEN_BAGS_FULL;
+            if (status.isExtended()) states |= CastRecord.SEEN_EXTENDED;
+            cycle.addBridgeState(states);
         }
+        return status;
+    }
 
-        // Visual feedback
-        if (config.isShowDetectionPoint()) {
-            DetectionOverlay.showAt(bobberPos);
+    private void record(Phase phase, long startNanos) {
+        latencies[phase.ordinal()].record((clock.nanoTime() - startNanos) / 1000);
+    }
+
+    private void exportLatencies() {
+        File file = config.resolve(LATENCY_FILE);
+        boolean header = !file.exists();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (header) {
+                out.println("session_start,phase,count,p50_ms,p95_ms,p99_ms,max_ms,mean_ms");
+            }
+            String session = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(startTime));
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram h = getLatency(phase);
+                out.printf(Locale.ROOT, "%s,%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n", session, phase, h.getCount(),
+                        h.getPercentileMicros(0.50) / 1000.0, h.getPercentileMicros(0.95) / 1000.0,
+                        h.getPercentileMicros(0.99) / 1000.0, h.getMaxMicros() / 1000.0, h.getMeanMicros() / 1000.0);
+            }
+            Log.info("Latencies exported to " + LATENCY_FILE);
+        } catch (IOException e) {
+            Log.error("Could not export latencies to " + LATENCY_FILE, e);
         }
+    }
 
-        // Move mouse towards bobber with reaction time and gaussian blur
-        int reactionDelay = config.getReactionTime();
-        System.out.println("[DEBUG] Bobber found. Moving mouse in " + reactionDelay + "ms...");
-        Humanizer.sleep(reactionDelay, 75);
-        if (!running) return bobberPos;
+    private void cancelSplashSubscription() {
+        if (splashSubscription != null) {
+            splashSubscription.cancel();
+            splashSubscription = null;
+        }
+    }
 
+    private void moveMouseToBobber(Point bobberPos, int screenIdx) {
         int targetX = bobberPos.x + Humanizer.getGaussianInt(0, 5);
         int targetY = bobberPos.y - Humanizer.getGaussianInt(10, 5);
-        System.out.println("[DEBUG] Moving mouse to randomized bobber position: (" + targetX + ", " + targetY + ")");
-        NativeMouse.mouseMove(targetX, targetY, screenIdx);
-        return bobberPos;
+        Log.debug(() -> "Moving mouse to randomized bobber position: (" + targetX + ", " + targetY + ")");
+        input.mouseMove(targetX, targetY, screenIdx);
     }
 
-    private boolean waitForSplash(long castTime) {
-        updateStatus("Listening...");
-        double threshold = config.getSplashThreshold();
-        System.out.println("[DEBUG] Listening for splash (threshold: " + threshold + ")...");
-
-        while (System.currentTimeMillis() - castTime < 22000 && running) {
-            double volume = audioMonitor.getCurrentVolume();
-            if (volume > threshold) {
-                System.out.println("[DEBUG] Splash detected! Volume: " + volume + " > Threshold: " + threshold);
-                updateStatus("Splash Detected!");
-                return true;
-            }
-
-            // Also check if addon stopped fishing unexpectedly (e.g. cancelled)
-            if (System.currentTimeMillis() - castTime > 1000) {
-                if (!pixelBridge.getStatus().isFishing()) {
-                    System.out.println("[DEBUG] Addon reported fishing stopped.");
-                    return false;
-                }
-            }
-            Humanizer.sleep(60, 15);
+    private void updateStatus(String status) {
+        if (statusListener != null) {
+            statusListener.accept(status);
         }
-        return false;
     }
 
-    private void logout() {
+    /**
+     * Types {@code /logout} into the chat and stops once the game had time to act on it. Each pause is a step of its
+     * own, so a stop in between cancels the rest.
+     */
+    private void logoutThenFinish() {
         updateStatus("Logging out...");
-        Humanizer.sleep(1000, 500);
-
-        int enterSC = NativeKeyboard.getScanCode(KeyEvent.VK_ENTER);
-        int slashSC = NativeKeyboard.getScanCode(KeyEvent.VK_SLASH);
-        int lSC = NativeKeyboard.getScanCode(KeyEvent.VK_L);
-        int oSC = NativeKeyboard.getScanCode(KeyEvent.VK_O);
-        int gSC = NativeKeyboard.getScanCode(KeyEvent.VK_G);
-        int uSC = NativeKeyboard.getScanCode(KeyEvent.VK_U);
-        int tSC = NativeKeyboard.getScanCode(KeyEvent.VK_T);
-
-        NativeKeyboard.sendKey(enterSC);
-        Humanizer.sleep(200, 50);
-        NativeKeyboard.sendKey(slashSC);
-        NativeKeyboard.sendKey(lSC);
-        NativeKeyboard.sendKey(oSC);
-        NativeKeyboard.sendKey(gSC);
-        NativeKeyboard.sendKey(oSC);
-        NativeKeyboard.sendKey(uSC);
-        NativeKeyboard.sendKey(tSC);
-        Humanizer.sleep(200, 50);
-        NativeKeyboard.sendKey(enterSC);
-
-        Humanizer.sleep(2000, 500);
+        int enterSC = input.getScanCode(KeyEvent.VK_ENTER);
+        after(Humanizer.getDelay(1000, 500), () -> {
+            input.sendKey(enterSC);
+            after(Humanizer.getDelay(200, 50), () -> {
+                for (int vk : LOGOUT_COMMAND) {
+                    input.sendKey(input.getScanCode(vk));
+                }
+                after(Humanizer.getDelay(200, 50), () -> {
+                    input.sendKey(enterSC);
+                    after(Humanizer.getDelay(2000, 500), this::finish);
+                });
+            });
+        });
+    }
+
+    /**
+     * Steps of one fishing cycle, in order. RECOVER pauses before the next cycle starts at LURE.
+     */
+    public enum State {
+        LURE,
+        CAST,
+        CONFIRM_CAST,
+        LOCATE_BOBBER,
+        LISTEN,
+        INTERACT,
+        CONFIRM_LOOT,
+        RECOVER
+    }
+
+    /**
+     * Latency phases measured every cycle.
+     */
+    public enum Phase {
+        CAST_TO_FISHING("Cast to fishing confirmed"),
+        CAST_TO_BOBBER("Cast to bobber found"),
+        BOBBER_SCAN("Bobber scan"),
+        SPLASH_TO_INTERACT("Splash to interact key"),
+        INTERACT_TO_LOOT("Interact to loot confirmed"),
+        FULL_CYCLE("Full cycle");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
     }
 
     public enum StopReason {
@@ -0,0 +1,125 @@
+package no.kess.utility.engine;
+
+import no.kess.utility.util.Log;
+
+import java.io.*;
+
+/**
+ * Calibrated bobber colour classifier: a bobber likelihood for every 15-bit quantized RGB colour.
+ * <p>
+ * Built by comparing the colours inside a box around the bobber with the rest of the search area, so colours common in
+ * the water score low even when they also appear on the bobber. Scoring a pixel is a single array load. The table is
+ * stored in {@code utility.colortable} next to {@code utility.properties}.
+ */
+public final class ColorLookupTable implements PixelScorer {
+    public static final String TABLE_FILE = "utility.colortable";
+    private static final int MAGIC = 0x424F4231; // "BOB1"
+    private static final int SIZE = 1 << 15;
+    // Likelihood (0-255) a colour needs to count towards a blob
+    private static final int MASK_LIKELIHOOD = 128;
+
+    private final byte[] table;
+
+    private ColorLookupTable(byte[] table) {
+        this.table = table;
+    }
+
+    @Override
+    public int score(int rgb) {
+        return (table[index(rgb)] & 0xFF) << 1;
+    }
+
+    @Override
+    public int getMaskThreshold() {
+        return MASK_LIKELIHOOD << 1;
+    }
+
+    private static int index(int rgb) {
+        return ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F);
+    }
+
+    /**
+     * Builds a table from a captured area and a box around the bobber, both relative to the area.
+     */
+    public static ColorLookupTable calibrate(int[] pixels, int offset, int scanline, int width, int height,
+                                             int boxX, int boxY, int boxWidth, int boxHeight) {
+        int[] bobber = new int[SIZE];
+        int[] background = new int[SIZE];
+        int bobberTotal = 0;
+        int backgroundTotal = 0;
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * scanline;
+            boolean inBoxRow = y >= boxY && y < boxY + boxHeight;
+            for (int x = 0; x < width; x++) {
+                int idx = index(pixels[row + x]);
+                if (inBoxRow && x >= boxX && x < boxX + boxWidth) {
+                    bobber[idx]++;
+                    bobberTotal++;
+                } else {
+                    background[idx]++;
+                    backgroundTotal++;
+                }
+            }
+        }
+
+        // Spread bobber counts to neighbouring colours so slight lighting shifts still match
+        int[] spread = spread(bobber);
+        int spreadTotal = bobberTotal * 27;
+
+        byte[] table = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            if (spread[i] == 0) continue;
+            double pBobber = (double) spread[i] / spreadTotal;
+            double pBackground = backgroundTotal == 0 ? 0 : (double) background[i] / backgroundTotal;
+            table[i] = (byte) Math.round(255 * pBobber / (pBobber + pBackground));
+        }
+        return new ColorLookupTable(table);
+    }
+
+    private static int[] spread(int[] counts) {
+        int[] out = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            if (counts[i] == 0) continue;
+            int r = i >> 10, g = (i >> 5) & 0x1F, b = i & 0x1F;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dg = -1; dg <= 1; dg++) {
+                    for (int db = -1; db <= 1; db++) {
+                        int nr = r + dr, ng = g + dg, nb = b + db;
+                        if ((nr | ng | nb) < 0 || nr > 31 || ng > 31 || nb > 31) continue;
+                        out[(nr << 10) | (ng << 5) | nb] += counts[i];
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return The saved table, or {@code null} if none has been calibrated.
+     */
+    public static ColorLookupTable load(File f) {
+        if (!f.exists()) return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (input.readInt() != MAGIC) {
+                Log.warn("Ignoring " + f + ": unknown format.");
+                return null;
+            }
+            byte[] table = new byte[SIZE];
+            input.readFully(table);
+            return new ColorLookupTable(table);
+        } catch (IOException ex) {
+            Log.error("Could not read " + f, ex);
+            return null;
+        }
+    }
+
+    public void save(File f) {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            output.writeInt(MAGIC);
+            output.write(table);
+            Log.info("Colour table saved to " + f);
+        } catch (IOException io) {
+            Log.error("Could not save " + f, io);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package no.kess.utility.engine;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a single bobber search: the ranked candidates, the ROI that was searched and what the search cost.
+ */
+public class DetectionResult {
+    private final List<Candidate> candidates;
+    private final Rectangle roi;
+    private final long scanTimeNanos;
+    private final long pixelsExamined;
+
+    public DetectionResult(List<Candidate> candidates, Rectangle roi, long scanTimeNanos, long pixelsExamined) {
+        this.candidates = Collections.unmodifiableList(candidates);
+        this.roi = new Rectangle(roi);
+        this.scanTimeNanos = scanTimeNanos;
+        this.pixelsExamined = pixelsExamined;
+    }
+
+    public boolean isFound() {
+        return !candidates.isEmpty();
+    }
+
+    /**
+     * @return The highest ranked candidate, or {@code null} if nothing was found.
+     */
+    public Candidate getBest() {
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    /**
+     * Candidates ordered from best to worst.
+     */
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    public Rectangle getRoi() {
+        return new Rectangle(roi);
+    }
+
+    public long getScanTimeNanos() {
+        return scanTimeNanos;
+    }
+
+    public double getScanTimeMs() {
+        return scanTimeNanos / 1_000_000.0;
+    }
+
+    public long getPixelsExamined() {
+        return pixelsExamined;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionResult{candidates=" + candidates.size() + ", best=" + getBest() + ", roi=" + roi
+                + ", scanTime=" + String.format("%.2f", getScanTimeMs()) + "ms, pixelsExamined=" + pixelsExamined + "}";
+    }
+
+    public static class Candidate {
+        private final Point position;
+        private final double score;
+        private final int area;
+
+        public Candidate(int x, int y, double score, int area) {
+            this.position = new Point(x, y);
+            this.score = score;
+            this.area = area;
+        }
+
+        /**
+         * Absolute screen position of the candidate.
+         */
+        public Point getPosition() {
+            return new Point(position);
+        }
+
+        public int getX() {
+            return position.x;
+        }
+
+        public int getY() {
+            return position.y;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Size in sampled pixels; 1 for single-pixel candidates.
+         */
+        public int getArea() {
+            return area;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + position.x + ", " + position.y + ") score " + String.format("%.1f", score) + " area " + area;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package no.kess.utility.engine;
+
+import no.kess.utility.util.Clock;
+import no.kess.utility.util.Log;
+
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Progressive fallback run when the regular bobber search comes up empty, before the cast is thrown away.
+ * <p>
+ * The stages get progressively more expensive: a full-resolution rescan of the frame that was just searched (the
+ * bobber may sit between step-2 samples), a search of an enlarged ROI (the cast may have landed just outside it), and
+ * finally a search of a fresh frame after a short settle (the bobber may have been hidden by the cast splash). Each
+ * stage adds its budget to the policy's deadline, so time an early stage leaves unused carries over. A stage only
+ * starts before the deadline and its scan stops at it; a stage that runs out of time ends the policy. Attempts, hits
+ * and time are counted per stage, so the number of recasts each one saves can be reported while the bot runs.
+ * <p>
+ * The fresh-frame stage is not run by {@link #search}: the caller waits out {@link #FRESH_FRAME_SETTLE_MS} on its own
+ * schedule and then calls {@link #searchFreshFrame}, so the settle never blocks the thread. Not thread-safe, one
+ * search at a time.
+ */
+public class ExpandingSearch {
+    // Frames younger than this are reused for the full-resolution rescan
+    private static final long FRAME_REUSE_MS = 1000;
+    private static final double ENLARGE_FACTOR = 1.5;
+    public static final long FRESH_FRAME_SETTLE_MS = 300;
+
+    private final BobberFinder finder;
+    private final Clock clock;
+    // Written by the engine thread, read by the UI
+    private final AtomicIntegerArray attempts = new AtomicIntegerArray(Stage.values().length);
+    private final AtomicIntegerArray hits = new AtomicIntegerArray(Stage.values().length);
+    private final AtomicIntegerArray overruns = new AtomicIntegerArray(Stage.values().length);
+    private final AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+    // Left by a search whose fresh-frame stage is still to run, null otherwise
+    private Rectangle freshFrameArea;
+    private long freshFrameDeadline;
+
+    public ExpandingSearch(BobberFinder finder, Clock clock) {
+        this.finder = finder;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs the fallback stages that search the current frame for a search of {@code roi} that found nothing. If they
+     * come up empty with time left, the fresh-frame stage is left pending, see {@link #hasFreshFrameStage()}.
+     *
+     * @return The first result with a candidate, or the last empty result.
+     */
+    public DetectionResult search(Rectangle roi, Rectangle screenBounds, DetectionResult missed) {
+        freshFrameArea = null;
+        long deadline = clock.nanoTime();
+        deadline += Stage.FULL_RESOLUTION.budgetMs * 1_000_000L;
+        DetectionResult result = runStage(Stage.FULL_RESOLUTION, roi, 1, FRAME_REUSE_MS, deadline);
+        if (result == null) return missed;
+        if (result.isFound()) return result;
+
+        Rectangle enlarged = enlarge(roi, screenBounds);
+        deadline += Stage.ENLARGED.budgetMs * 1_000_000L;
+        result = runStage(Stage.ENLARGED, enlarged, 2, 0, deadline);
+        if (result == null) return missed;
+        if (result.isFound()) return result;
+
+        freshFrameArea = enlarged;
+        freshFrameDeadline = deadline + (FRESH_FRAME_SETTLE_MS + Stage.FRESH_FRAME.budgetMs) * 1_000_000L;
+        return result;
+    }
+
+    /**
+     * Whether the last {@link #search} left the fresh-frame stage to run.
+     */
+    public boolean hasFreshFrameStage() {
+        return freshFrameArea != null;
+    }
+
+    /**
+     * Drops a pending fresh-frame stage, e.g. when a new search starts without running the fallback.
+     */
+    void dropFreshFrameStage() {
+        freshFrameArea = null;
+    }
+
+    /**
+     * Runs the pending fresh-frame stage, meant to be called {@link #FRESH_FRAME_SETTLE_MS} after {@link #search}
+     * returned. Late calls eat into the stage's budget.
+     *
+     * @return The stage result, or {@code missed} if no stage is pending or it ran out of time.
+     */
+    public DetectionResult searchFreshFrame(DetectionResult missed) {
+        Rectangle area = freshFrameArea;
+        if (area == null) return missed;
+        freshFrameArea = null;
+        DetectionResult result = runStage(Stage.FRESH_FRAME, area, 2, 0, freshFrameDeadline);
+        return result != null ? result : missed;
+    }
+
+    /**
+     * @param deadline Policy deadline on the clock's {@link Clock#nanoTime()}.
+     * @return The stage result, or {@code null} if the stage ran out of time and the policy should stop.
+     */
+    private DetectionResult runStage(Stage stage, Rectangle area, int step, long maxFrameAgeMs, long deadline) {
+        int i = stage.ordinal();
+        long start = clock.nanoTime();
+        if (start - deadline >= 0) {
+            overruns.incrementAndGet(i);
+            Log.info("No time left for fallback stage " + stage + ", giving up.");
+            return null;
+        }
+        attempts.incrementAndGet(i);
+        // The scan checks System.nanoTime(), which only matches the clock's time while it runs at wall speed
+        DetectionResult result = finder.detectIn(area, step, maxFrameAgeMs, System.nanoTime() + (deadline - start));
+        long end = clock.nanoTime();
+        nanos.addAndGet(i, end - start);
+
+        if (result.isFound()) {
+            hits.incrementAndGet(i);
+            Log.info("Fallback stage " + stage + " found the bobber, recast saved.");
+            return result;
+        }
+        if (end - deadline >= 0) {
+            overruns.incrementAndGet(i);
+            Log.info("Fallback stage " + stage + " ran out of its " + stage.budgetMs + "ms budget, giving up.");
+            return null;
+        }
+        return result;
+    }
+
+    private static Rectangle enlarge(Rectangle roi, Rectangle screenBounds) {
+        int width = (int) (roi.width * ENLARGE_FACTOR);
+        int height = (int) (roi.height * ENLARGE_FACTOR);
+        Rectangle enlarged = new Rectangle(roi.x - (width - roi.width) / 2, roi.y - (height - roi.height) / 2, width, height);
+        return enlarged.intersection(screenBounds);
+    }
+
+    /**
+     * Total recasts saved by the fallback stages.
+     */
+    public int getRecastsSaved() {
+        int saved = 0;
+        for (int i = 0; i < hits.length(); i++) {
+            saved += hits.get(i);
+        }
+        return saved;
+    }
+
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            int stageAttempts = attempts.get(i);
+            int stageOverruns = overruns.get(i);
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(stage).append(' ').append(hits.get(i)).append('/').append(stageAttempts);
+            if (stageAttempts > 0) {
+                sb.append(String.format(" (avg %.1fms", nanos.get(i) / 1_000_000.0 / stageAttempts));
+            }
+            if (stageOverruns > 0) {
+                sb.append(stageAttempts > 0 ? ", " : " (").append(stageOverruns).append(" out of time");
+            }
+            if (stageAttempts > 0 || stageOverruns > 0) sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    public enum Stage {
+        FULL_RESOLUTION(150),
+        ENLARGED(250),
+        FRESH_FRAME(300);
+
+        private final long budgetMs;
+
+        Stage(long budgetMs) {
+            this.budgetMs = budgetMs;
+        }
+    }
+}
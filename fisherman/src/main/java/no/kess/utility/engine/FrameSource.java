@@ -0,0 +1,24 @@
+package no.kess.utility.engine;
+
+import java.awt.*;
+
+/**
+ * Where the engine gets its pixels from: the screen through {@link ScreenCaptureService}, or a simulated game.
+ */
+public interface FrameSource {
+    /**
+     * Returns a frame covering {@code area} that is at most {@code maxAgeMs} old. Frames are never written after
+     * capture, so callers can keep reading one while newer frames are captured.
+     */
+    ScreenCaptureService.Frame capture(Rectangle area, long maxAgeMs);
+
+    /**
+     * Reads a short horizontal run of pixels into {@code dest} as packed RGB.
+     */
+    void readRow(int x, int y, int width, int[] dest, long maxAgeMs);
+
+    /**
+     * @return The bounds of the screen with the given index, or {@code null} if there is no such screen.
+     */
+    Rectangle getScreenBounds(int screenIndex);
+}
@@ -1,57 +1,357 @@
 package no.kess.utility.engine;
 
+import no.kess.utility.util.Log;
+
 import java.awt.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads the addon's status strip.
+ * <p>
+ * The addon draws a row of 2x2 pixel cells at the top-left corner of the screen:
+ * <ul>
+ *     <li>Cell 0, the original single-pixel bridge: R bags full, G fishing, B caught / too far / heartbeat levels.</li>
+ *     <li>Cell 1: R rolling frame sequence, G state flags, B free bag slots.</li>
+ *     <li>Cell 2: R rolling loot counter, G rolling 'Too Far' counter, B checksum of the cell 1 and 2 bytes.</li>
+ * </ul>
+ * The whole strip is read as one short row and decoded into primitives. When the checksum holds the exact state comes
+ * from cells 1 and 2; otherwise (an older addon, or colours altered on the way to the screen) the cell 0 thresholds
+ * are used. A frame sequence that stops moving means the game stopped drawing, see {@link #isFrozen()}.
+ * <p>
+ * Once {@link #start()} is called a single sampler thread reads the strip at a fixed rate and publishes an immutable,
+ * sequence-numbered {@link Status} whenever the state changes. {@link #getStatus()} then returns the latest snapshot
+ * without touching the screen, listeners hear of every change and {@link #awaitStatus} wakes up on one. The engine
+ * runs the sampler only while it fishes; without it every call reads the strip directly, and {@link #isFrozen()}
+ * cannot tell.
+ */
+public class PixelBridge implements StatusBridge {
+    // Reads within this window are shared between the engine and the UI
+    private static final long PIXEL_MAX_AGE_MS = 20;
+    public static final long DEFAULT_SAMPLE_INTERVAL_MS = 20;
+    // After a failed read the sampler backs off this long
+    private static final long RETRY_INTERVAL_MS = 100;
+    // Waits re-check at least this often, e.g. when nothing is published because the sampler is not running
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final int CELL_SIZE = 2;
+    private static final int CELLS = 3;
+    private static final int STRIP_WIDTH = CELL_SIZE * CELLS;
+    // The game draws every frame, so a sequence that holds this long means it stopped drawing
+    private static final long FROZEN_AFTER_MS = 500;
 
-public class PixelBridge {
-    private final Robot robot;
-    private int offsetX;
-    private int offsetY;
+    private final FrameSource frameSource;
+    private final List<Consumer<Status>> listeners = new CopyOnWriteArrayList<>();
+    private volatile int offsetX;
+    private volatile int offsetY;
+    private volatile long sampleIntervalMs = DEFAULT_SAMPLE_INTERVAL_MS;
+    private volatile Status latest;
+    private volatile int lastFrameSequence = -1;
+    private volatile long lastFrameTime;
+    // Row buffer, only touched by the sampler thread
+    private final int[] strip = new int[STRIP_WIDTH];
+    // Row buffer for direct reads, guarded by itself
+    private final int[] directRow = new int[STRIP_WIDTH];
+    private volatile boolean sampling;
+    private Thread sampler;
 
     public PixelBridge() {
-        try {
-            this.robot = new Robot();
-        } catch (AWTException e) {
-            throw new RuntimeException("Could not initialize Robot for PixelBridge", e);
-        }
+        this(ScreenCaptureService.getInstance());
     }
 
+    public PixelBridge(FrameSource frameSource) {
+        this.frameSource = frameSource;
+    }
+
+    @Override
     public void setOffset(int x, int y) {
         this.offsetX = x;
         this.offsetY = y;
     }
 
+    public void setSampleInterval(long intervalMs) {
+        this.sampleIntervalMs = Math.max(1, intervalMs);
+    }
+
+    /**
+     * Starts the sampler thread. Safe to call more than once.
+     */
+    @Override
+    public synchronized void start() {
+        if (sampler != null) return;
+        sampling = true;
+        sampler = new Thread(this::sampleLoop, "PixelBridgeSampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        sampling = false;
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+    }
+
+    private void sampleLoop() {
+        long sequence = 0;
+        while (sampling) {
+            try {
+                frameSource.readRow(offsetX, offsetY, STRIP_WIDTH, strip, PIXEL_MAX_AGE_MS);
+                long now = System.currentTimeMillis();
+                int legacy = strip[0];
+                int cell1 = strip[CELL_SIZE];
+                int cell2 = strip[2 * CELL_SIZE];
+                boolean extended = isValid(legacy, cell1, cell2);
+                if (extended) {
+                    int frameSequence = (cell1 >> 16) & 0xFF;
+                    if (frameSequence != lastFrameSequence) {
+                        lastFrameSequence = frameSequence;
+                        lastFrameTime = now;
+                    }
+                }
+
+                // Only a change of state is published, the frame sequence alone is not
+                Status current = latest;
+                if (current == null || !current.sameState(legacy, extended, cell1, cell2)) {
+                    publish(new Status(legacy, extended, cell1, cell2, ++sequence, now));
+                }
+                Thread.sleep(sampleIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                Log.error("Pixel bridge sample failed", e);
+                try {
+                    Thread.sleep(RETRY_INTERVAL_MS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same checksum as {@code StatusHelper.lua}. The heartbeat in cell 0 is required too, so a random dark screen
+     * corner cannot pass.
+     */
+    public static int checksum(int cell1, int cell2) {
+        int sequence = (cell1 >> 16) & 0xFF;
+        int flags = (cell1 >> 8) & 0xFF;
+        int slots = cell1 & 0xFF;
+        int loot = (cell2 >> 16) & 0xFF;
+        int tooFar = (cell2 >> 8) & 0xFF;
+        return (sequence + 3 * flags + 5 * slots + 7 * loot + 11 * tooFar + 0xA5) & 0xFF;
+    }
+
+    private static boolean isValid(int legacy, int cell1, int cell2) {
+        return (legacy & 0xFF) > 80 && (cell2 & 0xFF) == checksum(cell1, cell2);
+    }
+
+    /**
+     * Decodes the packed RGB of the three strip cells, checking the checksum like the sampler does.
+     *
+     * @param sequence  Number of changes published so far, or 0 for a one-off read.
+     * @param timestamp Time the strip was read.
+     */
+    public static Status decode(int legacy, int cell1, int cell2, long sequence, long timestamp) {
+        return new Status(legacy, isValid(legacy, cell1, cell2), cell1, cell2, sequence, timestamp);
+    }
+
+    private void publish(Status status) {
+        latest = status;
+        for (Consumer<Status> listener : listeners) {
+            listener.accept(status);
+        }
+    }
+
+    /**
+     * Registers a callback for every published change. It runs on the sampler thread, so it should only hand the
+     * status off.
+     */
+    @Override
+    public void addListener(Consumer<Status> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Consumer<Status> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The latest snapshot from the sampler, or a direct read if the sampler is not running.
+     */
+    @Override
     public Status getStatus() {
-        Color c = robot.getPixelColor(offsetX, offsetY);
-        return new Status(c);
+        Status current = latest;
+        if (sampling && current != null) return current;
+        synchronized (directRow) {
+            frameSource.readRow(offsetX, offsetY, STRIP_WIDTH, directRow, PIXEL_MAX_AGE_MS);
+            return decode(directRow[0], directRow[CELL_SIZE], directRow[2 * CELL_SIZE], 0, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return {@code true} if the addon speaks the strip protocol but its frame sequence has not moved for a while:
+     * the game is paused, minimized or on a loading screen, and the state on screen is stale.
+     */
+    @Override
+    public boolean isFrozen() {
+        Status current = latest;
+        return sampling && current != null && current.isExtended()
+                && System.currentTimeMillis() - lastFrameTime > FROZEN_AFTER_MS;
+    }
+
+    /**
+     * Blocks until the status matches the condition. The current status is checked first, so a state that already
+     * holds returns immediately. While the sampler runs every published change wakes the wait up; no lock is held
+     * while the strip is read.
+     *
+     * @return The matching status, or {@code null} on timeout or interrupt.
+     */
+    public Status awaitStatus(Predicate<Status> condition, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Thread waiter = Thread.currentThread();
+        // A change published between the check and the park leaves a permit, so it is not missed
+        Consumer<Status> wakeUp = status -> LockSupport.unpark(waiter);
+        addListener(wakeUp);
+        try {
+            while (true) {
+                Status status = getStatus();
+                if (condition.test(status)) return status;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return null;
+                LockSupport.parkNanos(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS)));
+                if (waiter.isInterrupted()) return null;
+            }
+        } finally {
+            removeListener(wakeUp);
+        }
     }
 
+    /**
+     * Immutable reading of the status strip.
+     */
     public static class Status {
+        public static final int FLAG_FISHING = 1;
+        public static final int FLAG_CAUGHT = 2;
+        public static final int FLAG_TOO_FAR = 4;
+        public static final int FLAG_BAGS_FULL = 8;
+
         private final int r, g, b;
+        private final boolean extended;
+        private final int flags;
+        private final int freeSlots;
+        private final int lootCount;
+        private final int tooFarCount;
+        private final long sequence;
+        private final long timestamp;
+
+        /**
+         * A reading of the single legacy pixel.
+         */
+        public Status(int rgb) {
+            this(rgb, false, 0, 0, 0, System.currentTimeMillis());
+        }
 
         public Status(Color c) {
-            this.r = c.getRed();
-            this.g = c.getGreen();
-            this.b = c.getBlue();
+            this(c.getRGB());
+        }
+
+        /**
+         * @param legacy    Packed RGB of cell 0.
+         * @param extended  Whether cells 1 and 2 passed the checksum.
+         * @param sequence  Number of changes the sampler has published, starting at 1; 0 for a direct read.
+         * @param timestamp Time the state was first read.
+         */
+        public Status(int legacy, boolean extended, int cell1, int cell2, long sequence, long timestamp) {
+            this.r = (legacy >> 16) & 0xFF;
+            this.g = (legacy >> 8) & 0xFF;
+            this.b = legacy & 0xFF;
+            this.extended = extended;
+            this.flags = extended ? (cell1 >> 8) & 0xFF : 0;
+            this.freeSlots = extended ? cell1 & 0xFF : -1;
+            this.lootCount = extended ? (cell2 >> 16) & 0xFF : -1;
+            this.tooFarCount = extended ? (cell2 >> 8) & 0xFF : -1;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+        }
+
+        boolean sameState(int legacy, boolean extended, int cell1, int cell2) {
+            if (extended != this.extended || legacy != getRGB()) return false;
+            // The frame sequence in cell 1 is left out, it changes every frame
+            return !extended || (((cell1 >> 8) & 0xFF) == flags && (cell1 & 0xFF) == freeSlots
+                    && ((cell2 >> 16) & 0xFF) == lootCount && ((cell2 >> 8) & 0xFF) == tooFarCount);
+        }
+
+        /**
+         * Whether the state comes from the checksummed strip rather than the legacy pixel thresholds.
+         */
+        public boolean isExtended() {
+            return extended;
         }
 
         public boolean isBagsFull() {
-            return r > 200;
+            return extended ? (flags & FLAG_BAGS_FULL) != 0 : r > 200;
         }
 
         public boolean isFishing() {
-            return g > 200;
+            return extended ? (flags & FLAG_FISHING) != 0 : g > 200;
         }
 
         public boolean isCaught() {
-            return b > 230;
+            return extended ? (flags & FLAG_CAUGHT) != 0 : b > 230;
         }
 
         public boolean isTooFar() {
-            return b > 170 && b < 210;
+            return extended ? (flags & FLAG_TOO_FAR) != 0 : b > 170 && b < 210;
         }
 
         public boolean isAddonDetected() {
-            return b > 80;
+            return extended || b > 80;
+        }
+
+        /**
+         * Whether a loot arrived after {@code before} was read. Exact with the strip protocol, otherwise the held
+         * 'caught' signal.
+         */
+        public boolean isCaughtSince(Status before) {
+            if (extended && before.extended) return lootCount != before.lootCount;
+            return isCaught();
+        }
+
+        /**
+         * Whether a 'Too Far' error arrived after {@code before} was read. Exact with the strip protocol, otherwise
+         * the held 'too far' signal.
+         */
+        public boolean isTooFarSince(Status before) {
+            if (extended && before.extended) return tooFarCount != before.tooFarCount;
+            return isTooFar();
+        }
+
+        /**
+         * @return Free bag slots, or -1 without the strip protocol.
+         */
+        public int getFreeBagSlots() {
+            return freeSlots;
+        }
+
+        /**
+         * @return The addon's rolling loot counter (0-255), or -1 without the strip protocol.
+         */
+        public int getLootCount() {
+            return lootCount;
+        }
+
+        /**
+         * @return The addon's rolling 'Too Far' counter (0-255), or -1 without the strip protocol.
+         */
+        public int getTooFarCount() {
+            return tooFarCount;
         }
 
         public int getRed() {
@@ -65,5 +365,27 @@ public class PixelBridge {
         public int getBlue() {
             return b;
         }
+
+        /**
+         * Packed RGB of the legacy pixel.
+         */
+        public int getRGB() {
+            return (r << 16) | (g << 8) | b;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            if (!extended) return "Status{legacy=" + String.format("%06X", getRGB()) + ", sequence=" + sequence + "}";
+            return "Status{flags=" + flags + ", freeSlots=" + freeSlots + ", loot=" + lootCount + ", tooFar=" + tooFarCount
+                    + ", sequence=" + sequence + "}";
+        }
     }
 }
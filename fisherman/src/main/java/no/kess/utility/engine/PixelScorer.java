@@ -0,0 +1,21 @@
+package no.kess.utility.engine;
+
+/**
+ * Per-pixel bobber score used by the scans, from 0 (not bobber) to 510.
+ */
+@FunctionalInterface
+public interface PixelScorer {
+    /**
+     * The built-in colour rule, see {@link RednessScanner#score(int)}.
+     */
+    PixelScorer REDNESS = RednessScanner::score;
+
+    int score(int rgb);
+
+    /**
+     * Score a pixel needs to count as part of a bobber blob.
+     */
+    default int getMaskThreshold() {
+        return 40;
+    }
+}
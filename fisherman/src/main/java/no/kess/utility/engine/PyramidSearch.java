@@ -0,0 +1,183 @@
+package no.kess.utility.engine;
+
+import java.util.Arrays;
+
+/**
+ * Coarse-to-fine bobber search.
+ * <p>
+ * A sparse pass over the whole area finds the few reddest, well separated regions, and only the coarse cells around
+ * each of them are rescanned at full resolution, each cell at most once. The regular step-2 scan takes over when the
+ * sparse pass finds nothing, or when the best refined pick is a lone red pixel rather than a region: that is a UI or
+ * spell effect pixel that happened to sit on the coarse grid, and the bobber may lie between the grid points.
+ */
+public class PyramidSearch {
+    private static final int COARSE_STEP = 8;
+    private static final int FINE_RADIUS = COARSE_STEP * 2;
+    // Coarse cells on each side of a seed's cell that are rescanned, covering at least FINE_RADIUS pixels
+    private static final int FINE_CELLS = FINE_RADIUS / COARSE_STEP;
+    private static final int FALLBACK_STEP = 2;
+    private static final int MAX_SEEDS = 4;
+    // Red pixels a refined pick needs in the 5x5 box around it to count as a region
+    private static final int SUPPORT_RADIUS = 2;
+    private static final int MIN_SUPPORT = 6;
+
+    private final long[] seeds = new long[MAX_SEEDS];
+    private final long[] refined = new long[MAX_SEEDS + 1];
+    private boolean[] scannedCells = new boolean[0];
+    private int refinedCount;
+    private long pixelsExamined;
+
+    /**
+     * @return The packed best candidate relative to {@code offset}, or {@link RednessScanner#NONE}.
+     */
+    public long search(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height) {
+        int seedCount = findSeeds(scorer, pixels, offset, scanline, width, height);
+        pixelsExamined = RednessScanner.samples(width, height, COARSE_STEP);
+        refinedCount = 0;
+
+        int cellsX = (width + COARSE_STEP - 1) / COARSE_STEP;
+        int cellsY = (height + COARSE_STEP - 1) / COARSE_STEP;
+        if (scannedCells.length < cellsX * cellsY) {
+            scannedCells = new boolean[cellsX * cellsY];
+        } else {
+            Arrays.fill(scannedCells, 0, cellsX * cellsY, false);
+        }
+
+        for (int i = 0; i < seedCount; i++) {
+            int seedCellX = RednessScanner.xOf(seeds[i]) / COARSE_STEP;
+            int seedCellY = RednessScanner.yOf(seeds[i]) / COARSE_STEP;
+            long local = RednessScanner.NONE;
+            for (int cy = Math.max(0, seedCellY - FINE_CELLS); cy <= Math.min(cellsY - 1, seedCellY + FINE_CELLS); cy++) {
+                for (int cx = Math.max(0, seedCellX - FINE_CELLS); cx <= Math.min(cellsX - 1, seedCellX + FINE_CELLS); cx++) {
+                    // Windows of nearby seeds overlap, a cell already rescanned has nothing new to offer
+                    if (scannedCells[cy * cellsX + cx]) continue;
+                    scannedCells[cy * cellsX + cx] = true;
+                    local = Math.max(local, scanCell(scorer, pixels, offset, scanline, width, height, cx, cy));
+                }
+            }
+            if (local != RednessScanner.NONE) {
+                insertRefined(local);
+            }
+        }
+
+        if (refinedCount == 0 || !isSupported(scorer, pixels, offset, scanline, width, height, refined[0])) {
+            pixelsExamined += RednessScanner.samples(width, height, FALLBACK_STEP);
+            long best = RednessScanner.scan(scorer, pixels, offset, scanline, width, height, FALLBACK_STEP);
+            if (best != RednessScanner.NONE) {
+                insertRefined(best);
+            }
+        }
+        return refinedCount > 0 ? refined[0] : RednessScanner.NONE;
+    }
+
+    private long scanCell(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height,
+                          int cellX, int cellY) {
+        int x0 = cellX * COARSE_STEP;
+        int y0 = cellY * COARSE_STEP;
+        int w = Math.min(COARSE_STEP, width - x0);
+        int h = Math.min(COARSE_STEP, height - y0);
+        pixelsExamined += (long) w * h;
+        long best = RednessScanner.scan(scorer, pixels, offset + y0 * scanline + x0, scanline, w, h, 1);
+        if (best == RednessScanner.NONE) return best;
+        return RednessScanner.pack(RednessScanner.scoreOf(best), RednessScanner.xOf(best) + x0,
+                RednessScanner.yOf(best) + y0);
+    }
+
+    /**
+     * Whether the candidate has enough red pixels around it to be a region.
+     */
+    private boolean isSupported(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height,
+                                long candidate) {
+        int cx = RednessScanner.xOf(candidate);
+        int cy = RednessScanner.yOf(candidate);
+        int x0 = Math.max(0, cx - SUPPORT_RADIUS);
+        int x1 = Math.min(width - 1, cx + SUPPORT_RADIUS);
+        int y0 = Math.max(0, cy - SUPPORT_RADIUS);
+        int y1 = Math.min(height - 1, cy + SUPPORT_RADIUS);
+        int support = 0;
+        for (int y = y0; y <= y1; y++) {
+            int row = offset + y * scanline;
+            for (int x = x0; x <= x1; x++) {
+                if (scorer.score(pixels[row + x]) > 0) support++;
+            }
+        }
+        pixelsExamined += (long) (x1 - x0 + 1) * (y1 - y0 + 1);
+        return support >= MIN_SUPPORT;
+    }
+
+    /**
+     * Number of refined regions from the last {@link #search} call, best first through {@link #getCandidate(int)}.
+     */
+    public int getCandidateCount() {
+        return refinedCount;
+    }
+
+    /**
+     * @return The packed best candidate of the region at the given rank.
+     */
+    public long getCandidate(int rank) {
+        return refined[rank];
+    }
+
+    private void insertRefined(long candidate) {
+        for (int i = 0; i < refinedCount; i++) {
+            if (refined[i] == candidate) return; // The fallback scan found a pixel a window already had
+        }
+        int pos = refinedCount++;
+        while (pos > 0 && refined[pos - 1] < candidate) {
+            refined[pos] = refined[pos - 1];
+            pos--;
+        }
+        refined[pos] = candidate;
+    }
+
+    /**
+     * Pixels read by the last {@link #search} call.
+     */
+    public long getPixelsExamined() {
+        return pixelsExamined;
+    }
+
+    private int findSeeds(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height) {
+        int count = 0;
+        for (int y = 0; y < height; y += COARSE_STEP) {
+            int row = offset + y * scanline;
+            for (int x = 0; x < width; x += COARSE_STEP) {
+                int s = scorer.score(pixels[row + x]);
+                if (s > 0) {
+                    count = offerSeed(RednessScanner.pack(s, x, y), count);
+                }
+            }
+        }
+        return count;
+    }
+
+    private int offerSeed(long candidate, int count) {
+        int cx = RednessScanner.xOf(candidate);
+        int cy = RednessScanner.yOf(candidate);
+
+        // Neighbouring coarse hits belong to the same region, keep only the strongest one
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(RednessScanner.xOf(seeds[i]) - cx) <= FINE_RADIUS
+                    && Math.abs(RednessScanner.yOf(seeds[i]) - cy) <= FINE_RADIUS) {
+                if (candidate > seeds[i]) {
+                    seeds[i] = candidate;
+                }
+                return count;
+            }
+        }
+
+        if (count < MAX_SEEDS) {
+            seeds[count] = candidate;
+            return count + 1;
+        }
+        int weakest = 0;
+        for (int i = 1; i < count; i++) {
+            if (seeds[i] < seeds[weakest]) weakest = i;
+        }
+        if (candidate > seeds[weakest]) {
+            seeds[weakest] = candidate;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,246 @@
+package no.kess.utility.engine;
+
+import no.kess.utility.util.Log;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Allocation-free redness scan over the packed RGB pixels of a screen capture.
+ * <p>
+ * A candidate is packed into a single {@code long} (score in the high word, inverted x and y below it), so the best
+ * candidate is kept in a primitive local and the greater packed value always wins. Ties resolve towards the smallest
+ * x and then the smallest y, which is the same pick the original column-major {@code getRGB} scan made.
+ */
+public final class RednessScanner {
+    public static final long NONE = 0L;
+    private static final int COORD_MASK = 0xFFFF;
+    // Below this many sampled pixels the fork/join overhead outweighs the gain
+    private static final int PARALLEL_MIN_SAMPLES = 64 * 1024;
+    private static final int TILE_SAMPLE_ROWS = 16;
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_SCANNER = "no.kess.utility.engine.VectorRednessScanner";
+    private static final PeakScanner PEAK_SCANNER = loadPeakScanner();
+
+    private RednessScanner() {
+    }
+
+    /**
+     * The fastest available scan implementation: the Vector API one when the build included it and the JVM was started
+     * with {@code --add-modules jdk.incubator.vector}, otherwise the scalar {@link #scan(int[], int, int, int, int, int)}.
+     */
+    public static PeakScanner peakScanner() {
+        return PEAK_SCANNER;
+    }
+
+    private static PeakScanner loadPeakScanner() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                PeakScanner scanner = (PeakScanner) Class.forName(VECTOR_SCANNER).getDeclaredConstructor().newInstance();
+                Log.info("Using Vector API redness scan.");
+                return scanner;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Log.warn("Vector API scan not available (" + e + "), using scalar scan.");
+            }
+        }
+        return RednessScanner::scan;
+    }
+
+    /**
+     * Redness score of a single pixel, in fixed point (twice the redness).
+     * Same rule as {@code r > g * 1.5 && r > b * 1.5} with {@code r - (g + b) / 2}, kept in integers.
+     *
+     * @return The doubled redness, or 0 if the pixel is not red enough.
+     */
+    public static int score(int rgb) {
+        int r2 = (rgb >> 15) & 0x1FE;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        if (r2 > 3 * g && r2 > 3 * b) {
+            return r2 - g - b;
+        }
+        return 0;
+    }
+
+    public static long pack(int score, int x, int y) {
+        return ((long) score << 32) | ((long) (COORD_MASK - x) << 16) | (COORD_MASK - y);
+    }
+
+    public static int scoreOf(long candidate) {
+        return (int) (candidate >>> 32);
+    }
+
+    public static int xOf(long candidate) {
+        return COORD_MASK - (int) ((candidate >>> 16) & COORD_MASK);
+    }
+
+    public static int yOf(long candidate) {
+        return COORD_MASK - (int) (candidate & COORD_MASK);
+    }
+
+    /**
+     * Number of pixels a scan with the given step reads.
+     */
+    public static long samples(int width, int height, int step) {
+        return (long) ((width + step - 1) / step) * ((height + step - 1) / step);
+    }
+
+    /**
+     * Scans a capture, reading its backing int array directly when possible.
+     *
+     * @return The packed best candidate in image coordinates, or {@link #NONE}.
+     */
+    public static long scan(BufferedImage image, int step) {
+        Raster raster = image.getRaster();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            int offset = buffer.getOffset()
+                    + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            return scan(buffer.getData(), offset, sm.getScanlineStride(), image.getWidth(), image.getHeight(), step);
+        }
+
+        // Unusual capture format, convert once and scan the copy
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        return scan(pixels, 0, width, width, height, step);
+    }
+
+    /**
+     * Scans a packed RGB pixel array, sampling every {@code step} pixels in both directions.
+     *
+     * @return The packed best candidate relative to {@code offset}, or {@link #NONE}.
+     */
+    public static long scan(int[] pixels, int offset, int scanline, int width, int height, int step) {
+        return scan(PixelScorer.REDNESS, pixels, offset, scanline, width, height, step);
+    }
+
+    /**
+     * Same as {@link #scan(int[], int, int, int, int, int)} with a custom per-pixel score.
+     */
+    public static long scan(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height, int step) {
+        long best = NONE;
+        int bestScore = 1;
+        for (int y = 0; y < height; y += step) {
+            int row = offset + y * scanline;
+            for (int x = 0; x < width; x += step) {
+                int s = scorer.score(pixels[row + x]);
+                if (s >= bestScore) {
+                    long candidate = pack(s, x, y);
+                    if (candidate > best) {
+                        best = candidate;
+                        bestScore = s;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Same result as {@link #scan(PixelScorer, int[], int, int, int, int, int)}, but scores horizontal tiles of the area
+     * on a {@link ForkJoinPool}. Small areas fall back to the sequential scan.
+     * <p>
+     * Keeps the per-tile results between scans, so one instance belongs to one caller, like the other searches.
+     */
+    public static final class ParallelScan {
+        private final ForkJoinPool pool;
+        private long[] tileBest = new long[0];
+        private PixelScorer lastScorer;
+        private PeakScanner lastScanner;
+
+        public ParallelScan(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        public long scan(PixelScorer scorer, int[] pixels, int offset, int scanline, int width, int height, int step) {
+            PeakScanner scanner = scannerFor(scorer);
+            if (samples(width, height, step) < PARALLEL_MIN_SAMPLES || pool.getParallelism() < 2) {
+                return scanner.scan(pixels, offset, scanline, width, height, step);
+            }
+
+            // Tiles start on the sampling grid so every tile samples exactly the pixels the sequential scan would
+            int tileHeight = TILE_SAMPLE_ROWS * step;
+            int tiles = (height + tileHeight - 1) / tileHeight;
+            if (tileBest.length < tiles) {
+                tileBest = new long[tiles];
+            }
+            pool.invoke(new TileScan(scanner, pixels, offset, scanline, width, height, step, tileHeight, tileBest, 0, tiles));
+
+            // The packed ordering is total, so the reduction does not depend on which tile finished first
+            long best = NONE;
+            for (int i = 0; i < tiles; i++) {
+                best = Math.max(best, tileBest[i]);
+            }
+            return best;
+        }
+
+        private PeakScanner scannerFor(PixelScorer scorer) {
+            if (scorer == PixelScorer.REDNESS) return PEAK_SCANNER;
+            if (scorer != lastScorer) {
+                lastScanner = (p, o, sl, w, h, st) -> RednessScanner.scan(scorer, p, o, sl, w, h, st);
+                lastScorer = scorer;
+            }
+            return lastScanner;
+        }
+    }
+
+    /**
+     * A peak scan over packed RGB pixels, returning the packed best candidate relative to {@code offset}.
+     */
+    @FunctionalInterface
+    public interface PeakScanner {
+        long scan(int[] pixels, int offset, int scanline, int width, int height, int step);
+    }
+
+    private static final class TileScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PeakScanner scanner;
+        private final int[] pixels;
+        private final int offset, scanline, width, height, step, tileHeight;
+        private final long[] tileBest;
+        private final int fromTile, toTile;
+
+        TileScan(PeakScanner scanner, int[] pixels, int offset, int scanline, int width, int height, int step,
+                 int tileHeight, long[] tileBest, int fromTile, int toTile) {
+            this.scanner = scanner;
+            this.pixels = pixels;
+            this.offset = offset;
+            this.scanline = scanline;
+            this.width = width;
+            this.height = height;
+            this.step = step;
+            this.tileHeight = tileHeight;
+            this.tileBest = tileBest;
+            this.fromTile = fromTile;
+            this.toTile = toTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (toTile - fromTile == 1) {
+                int y0 = fromTile * tileHeight;
+                int rows = Math.min(tileHeight, height - y0);
+                long best = scanner.scan(pixels, offset + y0 * scanline, scanline, width, rows, step);
+                if (best != NONE) {
+                    // Shift back into area coordinates, y was scanned relative to the tile
+                    best = pack(scoreOf(best), xOf(best), yOf(best) + y0);
+                }
+                tileBest[fromTile] = best;
+                return;
+            }
+            int mid = (fromTile + toTile) >>> 1;
+            invokeAll(new TileScan(scanner, pixels, offset, scanline, width, height, step, tileHeight, tileBest, fromTile, mid),
+                    new TileScan(scanner, pixels, offset, scanline, width, height, step, tileHeight, tileBest, mid, toTile));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package no.kess.utility.engine;
+
+import no.kess.utility.util.Log;
+
+import java.awt.*;
+import java.io.*;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Heatmap of confirmed catch positions inside the configured search area, kept in a side file next to
+ * {@code utility.properties}.
+ * <p>
+ * Casts land in a fairly consistent spot, so once enough catches are recorded the heatmap yields a tight search window
+ * around where the bobber usually is. Counts are halved whenever the total grows large, so the window follows the
+ * player to a new fishing spot. The file is written every few catches and on {@link #flush()}, not on every catch.
+ */
+public class RoiHeatmap {
+    public static final String HEATMAP_FILE = "utility.heatmap";
+    private static final int CELL_SIZE = 32;
+    private static final int MIN_SAMPLES = 10;
+    private static final int DECAY_TOTAL = 200;
+    private static final double COVERAGE = 0.95;
+    private static final int MARGIN_CELLS = 2;
+    private static final int SAVE_EVERY = 10;
+    // Cell indexes are packed below the count when sorting; a 32px grid stays far below this even on 8K screens
+    private static final int INDEX_BITS = 16;
+
+    private final File file;
+    private Rectangle roi;
+    private int cols;
+    private int rows;
+    private int[] counts;
+    private int[] order;
+    private int total;
+    private int unsaved;
+
+    public RoiHeatmap(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Points the heatmap at the given search area, loading the saved heatmap if it was recorded for the same area.
+     * A different area starts an empty heatmap.
+     */
+    public synchronized void bind(Rectangle fullRoi) {
+        if (fullRoi.equals(roi)) return;
+        flush();
+        reset(fullRoi);
+        load();
+    }
+
+    public synchronized void record(Point p) {
+        if (roi == null || !roi.contains(p)) return;
+        counts[(p.y - roi.y) / CELL_SIZE * cols + (p.x - roi.x) / CELL_SIZE]++;
+        total++;
+        if (total >= DECAY_TOTAL) {
+            total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= 1;
+                total += counts[i];
+            }
+        }
+        if (++unsaved >= SAVE_EVERY) {
+            save();
+        }
+    }
+
+    /**
+     * Writes catches recorded since the last save, e.g. when the bot stops.
+     */
+    public synchronized void flush() {
+        if (unsaved > 0) {
+            save();
+        }
+    }
+
+    /**
+     * @return A window covering most recorded catches, or {@code null} while there is not enough history.
+     */
+    public synchronized Rectangle getSearchWindow() {
+        if (roi == null || total < MIN_SAMPLES) return null;
+
+        // Take the hottest cells until they cover most of the catches. Sorting count and inverted index packed into one
+        // int puts the hottest cells last, and the lowest index first among equal counts.
+        int indexMask = (1 << INDEX_BITS) - 1;
+        for (int i = 0; i < counts.length; i++) {
+            order[i] = (counts[i] << INDEX_BITS) | (indexMask - i);
+        }
+        Arrays.sort(order);
+
+        int minCol = cols, maxCol = -1, minRow = rows, maxRow = -1;
+        int covered = 0;
+        for (int k = order.length - 1; k >= 0; k--) {
+            int cell = indexMask - (order[k] & indexMask);
+            if (covered >= total * COVERAGE || counts[cell] == 0) break;
+            covered += counts[cell];
+            int col = cell % cols;
+            int row = cell / cols;
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+        }
+        if (maxCol < 0) return null;
+
+        minCol = Math.max(0, minCol - MARGIN_CELLS);
+        minRow = Math.max(0, minRow - MARGIN_CELLS);
+        maxCol = Math.min(cols - 1, maxCol + MARGIN_CELLS);
+        maxRow = Math.min(rows - 1, maxRow + MARGIN_CELLS);
+        Rectangle window = new Rectangle(roi.x + minCol * CELL_SIZE, roi.y + minRow * CELL_SIZE,
+                (maxCol - minCol + 1) * CELL_SIZE, (maxRow - minRow + 1) * CELL_SIZE);
+        return window.intersection(roi);
+    }
+
+    public synchronized int getSampleCount() {
+        return total;
+    }
+
+    private void reset(Rectangle fullRoi) {
+        roi = new Rectangle(fullRoi);
+        cols = Math.max(1, (roi.width + CELL_SIZE - 1) / CELL_SIZE);
+        rows = Math.max(1, (roi.height + CELL_SIZE - 1) / CELL_SIZE);
+        counts = new int[cols * rows];
+        order = new int[counts.length];
+        total = 0;
+        unsaved = 0;
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        Properties properties = new Properties();
+        try (InputStream input = new FileInputStream(file)) {
+            properties.load(input);
+        } catch (IOException ex) {
+            Log.error("Could not read " + file, ex);
+            return;
+        }
+
+        String savedRoi = roi.x + "," + roi.y + "," + roi.width + "," + roi.height;
+        String data = properties.getProperty("counts");
+        if (!savedRoi.equals(properties.getProperty("roi")) || data == null) return;
+        String[] values = data.split(",");
+        if (values.length != counts.length) return;
+        try {
+            for (int i = 0; i < values.length; i++) {
+                counts[i] = Integer.parseInt(values[i]);
+                total += counts[i];
+            }
+        } catch (NumberFormatException e) {
+            Arrays.fill(counts, 0);
+            total = 0;
+        }
+    }
+
+    private void save() {
+        unsaved = 0;
+        Properties properties = new Properties();
+        properties.setProperty("roi", roi.x + "," + roi.y + "," + roi.width + "," + roi.height);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(counts[i]);
+        }
+        properties.setProperty("counts", sb.toString());
+        try (OutputStream output = new FileOutputStream(file)) {
+            properties.store(output, "Bobber position heatmap");
+        } catch (IOException io) {
+            Log.error("Could not save " + file, io);
+        }
+    }
+}
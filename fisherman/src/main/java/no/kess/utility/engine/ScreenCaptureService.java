@@ -0,0 +1,179 @@
+package no.kess.utility.engine;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Single owner of screen capture for the whole application.
+ * <p>
+ * Frames read the capture's own pixel array in place, with its offset and scanline stride, and are timestamped, so a
+ * recent frame (or a recently read pixel) can serve more than one consumer instead of each one doing its own native
+ * capture. All access is serialized on the service.
+ */
+public final class ScreenCaptureService implements FrameSource {
+    private static ScreenCaptureService instance;
+
+    private final Robot robot;
+    private Frame latest;
+
+    private ScreenCaptureService() {
+        try {
+            this.robot = new Robot();
+        } catch (AWTException e) {
+            throw new RuntimeException("Could not initialize Robot for ScreenCaptureService", e);
+        }
+    }
+
+    public static synchronized ScreenCaptureService getInstance() {
+        if (instance == null) {
+            instance = new ScreenCaptureService();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a frame covering {@code area} that is at most {@code maxAgeMs} old, capturing a new one if needed.
+     * Frames are never written after capture, so a shared one stays valid for as long as any consumer holds it.
+     */
+    @Override
+    public synchronized Frame capture(Rectangle area, long maxAgeMs) {
+        long now = System.currentTimeMillis();
+        if (latest != null && now - latest.timestamp <= maxAgeMs && latest.contains(area)) {
+            return latest;
+        }
+
+        BufferedImage image = robot.createScreenCapture(area);
+        latest = Frame.of(image, area.x, area.y, System.currentTimeMillis());
+        return latest;
+    }
+
+    /**
+     * Reads a short horizontal run of screen pixels into {@code dest}, reusing a recent frame that covers it. A fresh
+     * read is not kept as the latest frame, so a tiny strip never displaces a full frame other consumers share.
+     */
+    @Override
+    public synchronized void readRow(int x, int y, int width, int[] dest, long maxAgeMs) {
+        long now = System.currentTimeMillis();
+        if (latest != null && now - latest.timestamp <= maxAgeMs
+                && latest.contains(x, y) && latest.contains(x + width - 1, y)) {
+            System.arraycopy(latest.pixels, latest.offsetOf(x, y), dest, 0, width);
+        } else {
+            BufferedImage image = robot.createScreenCapture(new Rectangle(x, y, width, 1));
+            image.getRGB(0, 0, width, 1, dest, 0, width);
+        }
+        for (int i = 0; i < width; i++) {
+            dest[i] &= 0xFFFFFF;
+        }
+    }
+
+    @Override
+    public Rectangle getScreenBounds(int screenIndex) {
+        GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        if (screenIndex < 0 || screenIndex >= screens.length) return null;
+        return screens[screenIndex].getDefaultConfiguration().getBounds();
+    }
+
+    /**
+     * A captured screen area: a view of packed RGB pixels starting at an offset, with a scanline stride that can be
+     * wider than the area.
+     */
+    public static final class Frame {
+        private final int[] pixels;
+        private final int base;
+        private final int scanline;
+        private final int x, y, width, height;
+        private final long timestamp;
+
+        private Frame(int[] pixels, int base, int scanline, int x, int y, int width, int height, long timestamp) {
+            this.pixels = pixels;
+            this.base = base;
+            this.scanline = scanline;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * A frame over pixels that did not come from the screen, with {@code width} pixels per row.
+         */
+        public static Frame wrap(int[] pixels, int x, int y, int width, int height, long timestamp) {
+            return new Frame(pixels, 0, width, x, y, width, height, timestamp);
+        }
+
+        /**
+         * A frame over the image's own pixel array when it is packed RGB, which the screen capture is. Anything else
+         * is converted once.
+         */
+        static Frame of(BufferedImage image, int screenX, int screenY, long timestamp) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            Raster raster = image.getRaster();
+            if (image.getType() == BufferedImage.TYPE_INT_RGB
+                    && raster.getDataBuffer() instanceof DataBufferInt
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+                DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                int offset = buffer.getOffset()
+                        + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+                return new Frame(buffer.getData(), offset, sm.getScanlineStride(), screenX, screenY, width, height,
+                        timestamp);
+            }
+            int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+            return new Frame(pixels, 0, width, screenX, screenY, width, height, timestamp);
+        }
+
+        public boolean contains(Rectangle area) {
+            return area.x >= x && area.y >= y
+                    && area.x + area.width <= x + width
+                    && area.y + area.height <= y + height;
+        }
+
+        public boolean contains(int screenX, int screenY) {
+            return screenX >= x && screenY >= y && screenX < x + width && screenY < y + height;
+        }
+
+        public int getRGB(int screenX, int screenY) {
+            return pixels[offsetOf(screenX, screenY)] & 0xFFFFFF;
+        }
+
+        /**
+         * Index into {@link #getPixels()} of the given screen coordinate.
+         */
+        public int offsetOf(int screenX, int screenY) {
+            return base + (screenY - y) * scanline + (screenX - x);
+        }
+
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        public int getScanline() {
+            return scanline;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package no.kess.utility.engine;
+
+import java.util.function.Consumer;
+
+/**
+ * The addon's state as the engine sees it: the {@link PixelBridge} reading the status strip, or a simulated game.
+ */
+public interface StatusBridge {
+    /**
+     * Moves the strip to the top-left corner of the screen at the given offset.
+     */
+    void setOffset(int x, int y);
+
+    /**
+     * Starts publishing status changes to the listeners. Safe to call more than once.
+     */
+    void start();
+
+    /**
+     * Stops publishing. Safe to call when not started.
+     */
+    void stop();
+
+    /**
+     * @return The latest status.
+     */
+    PixelBridge.Status getStatus();
+
+    /**
+     * @return {@code true} if the game stopped drawing and the status is stale.
+     */
+    boolean isFrozen();
+
+    /**
+     * Registers a callback for every status change. It may run on another thread, so it should only hand the status
+     * off.
+     */
+    void addListener(Consumer<PixelBridge.Status> listener);
+
+    void removeListener(Consumer<PixelBridge.Status> listener);
+}
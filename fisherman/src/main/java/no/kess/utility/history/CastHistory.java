@@ -0,0 +1,282 @@
+package no.kess.utility.history;
+
+import no.kess.utility.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only, column-oriented history of every cast.
+ * <p>
+ * Records are buffered and written in blocks of up to {@value #BLOCK_ROWS} rows. A block starts with a marker and its
+ * row count, followed by each {@link Column} for all rows in turn, so a query only reads the columns it needs and
+ * skips whole blocks outside its time range. Queries stream one block at a time, so memory does not grow with the
+ * history. A block cut short by a crash is dropped when the file is opened. Casts still buffered at a crash are lost,
+ * so {@link #flush()} also writes a short block: the engine calls it every minute, at the end of every session and on
+ * exit.
+ */
+public final class CastHistory {
+    private static final int FILE_MAGIC = 0x46485354; // "FHST"
+    private static final int VERSION = 1;
+    private static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int BLOCK_HEADER_BYTES = 8;
+    static final int BLOCK_ROWS = 64;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private final File file;
+    private final ByteBuffer[] pending = new ByteBuffer[Column.values().length];
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+    private int pendingRows;
+    private boolean writable;
+
+    /**
+     * Opens or creates the history file.
+     */
+    public CastHistory(File file) {
+        this.file = file;
+        for (Column column : Column.values()) {
+            pending[column.ordinal()] = ByteBuffer.allocate(BLOCK_ROWS * column.width);
+        }
+        try {
+            writable = prepare();
+        } catch (IOException e) {
+            Log.error("Could not open " + file + ", cast history is disabled", e);
+        }
+    }
+
+    /**
+     * Writes the header of a new file, or drops a trailing block that was cut short.
+     */
+    private boolean prepare() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() == 0) {
+                ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(FILE_MAGIC).putInt(VERSION);
+                fileHeader.flip();
+                channel.write(fileHeader, 0);
+                return true;
+            }
+            ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            channel.read(fileHeader, 0);
+            if (fileHeader.getInt(0) != FILE_MAGIC || fileHeader.getInt(4) != VERSION) {
+                Log.warn("Ignoring " + file + ": unknown format, cast history is disabled.");
+                return false;
+            }
+            long end = FILE_HEADER_BYTES;
+            while (true) {
+                int rows = readBlockHeader(channel, end);
+                if (rows < 0 || end + blockBytes(rows) > channel.size()) break;
+                end += blockBytes(rows);
+            }
+            if (end < channel.size()) {
+                Log.warn("Dropping " + (channel.size() - end) + " bytes of an incomplete block from " + file);
+                channel.truncate(end);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Buffers a closed record, writing a block when it is full.
+     */
+    public synchronized void append(CastRecord record) {
+        if (!writable || record.outcome == null) return;
+        pending[Column.CAST_TIME.ordinal()].putLong(record.castTime);
+        pending[Column.FISHING_AT.ordinal()].putInt(record.fishingAt);
+        pending[Column.BOBBER_AT.ordinal()].putInt(record.bobberAt);
+        pending[Column.SPLASH_AT.ordinal()].putInt(record.splashAt);
+        pending[Column.INTERACT_AT.ordinal()].putInt(record.interactAt);
+        pending[Column.LOOT_AT.ordinal()].putInt(record.lootAt);
+        pending[Column.END_AT.ordinal()].putInt(record.endAt);
+        pending[Column.SCAN_MICROS.ordinal()].putInt(record.scanMicros);
+        pending[Column.SCORE.ordinal()].putFloat(record.score);
+        pending[Column.X.ordinal()].putInt(record.x);
+        pending[Column.Y.ordinal()].putInt(record.y);
+        pending[Column.CANDIDATE.ordinal()].put((byte) record.candidate);
+        pending[Column.AUDIO_PEAK.ordinal()].putFloat(record.audioPeak);
+        pending[Column.THRESHOLD.ordinal()].putFloat(record.threshold);
+        pending[Column.BRIDGE_STATES.ordinal()].put((byte) record.bridgeStates);
+        pending[Column.OUTCOME.ordinal()].put((byte) record.outcome.ordinal());
+        if (++pendingRows == BLOCK_ROWS) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered records as one block.
+     */
+    public synchronized void flush() {
+        if (!writable || pendingRows == 0) return;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            header.clear();
+            header.putInt(BLOCK_MAGIC).putInt(pendingRows).flip();
+            ByteBuffer[] block = new ByteBuffer[pending.length + 1];
+            block[0] = header;
+            for (int i = 0; i < pending.length; i++) {
+                pending[i].flip();
+                block[i + 1] = pending[i];
+            }
+            while (header.hasRemaining() || pending[pending.length - 1].hasRemaining()) {
+                channel.write(block);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            Log.error("Could not write to " + file, e);
+        } finally {
+            for (ByteBuffer buffer : pending) {
+                buffer.clear();
+            }
+            pendingRows = 0;
+        }
+    }
+
+    /**
+     * Aggregates every cast from {@code fromMillis} (inclusive) to {@code toMillis} (exclusive).
+     */
+    public HistorySummary summarize(long fromMillis, long toMillis) {
+        HistorySummary summary = new HistorySummary(fromMillis, toMillis);
+        scan(fromMillis, toMillis, new Column[]{Column.OUTCOME, Column.END_AT, Column.SCORE, Column.AUDIO_PEAK},
+                (block, row, castTime) -> summary.add(
+                        CastRecord.Outcome.values()[block.get(Column.OUTCOME).get(row)],
+                        block.get(Column.END_AT).getInt(row * 4),
+                        block.get(Column.SCORE).getFloat(row * 4),
+                        block.get(Column.AUDIO_PEAK).getFloat(row * 4)));
+        return summary;
+    }
+
+    /**
+     * Catches in each whole hour from {@code fromMillis}, as a rolling series.
+     */
+    public long[] catchesPerHour(long fromMillis, long toMillis) {
+        long[] hours = new long[(int) Math.max(0, (toMillis - fromMillis + HOUR_MS - 1) / HOUR_MS)];
+        byte caught = (byte) CastRecord.Outcome.CAUGHT.ordinal();
+        scan(fromMillis, toMillis, new Column[]{Column.OUTCOME}, (block, row, castTime) -> {
+            if (block.get(Column.OUTCOME).get(row) == caught) {
+                hours[(int) ((castTime - fromMillis) / HOUR_MS)]++;
+            }
+        });
+        return hours;
+    }
+
+    /**
+     * Streams the rows in the time range block by block, reading only the cast times and the requested columns.
+     */
+    private synchronized void scan(long fromMillis, long toMillis, Column[] columns, RowVisitor visitor) {
+        if (!writable) return;
+        flush();
+        BlockView view = new BlockView();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = FILE_HEADER_BYTES;
+            long size = channel.size();
+            while (true) {
+                int rows = readBlockHeader(channel, position);
+                if (rows < 0 || position + blockBytes(rows) > size) break;
+                ByteBuffer times = view.load(channel, position, rows, Column.CAST_TIME);
+                if (times.getLong(0) < toMillis && times.getLong((rows - 1) * 8) >= fromMillis) {
+                    for (Column column : columns) {
+                        view.load(channel, position, rows, column);
+                    }
+                    for (int row = 0; row < rows; row++) {
+                        long castTime = times.getLong(row * 8);
+                        if (castTime >= fromMillis && castTime < toMillis) {
+                            visitor.visit(view, row, castTime);
+                        }
+                    }
+                }
+                position += blockBytes(rows);
+            }
+        } catch (IOException e) {
+            Log.error("Could not read " + file, e);
+        }
+    }
+
+    private int readBlockHeader(FileChannel channel, long position) throws IOException {
+        header.clear();
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) return -1;
+        }
+        if (header.getInt(0) != BLOCK_MAGIC) return -1;
+        int rows = header.getInt(4);
+        return rows > 0 && rows <= BLOCK_ROWS ? rows : -1;
+    }
+
+    private static long blockBytes(int rows) {
+        return BLOCK_HEADER_BYTES + (long) rows * Column.ROW_BYTES;
+    }
+
+    private interface RowVisitor {
+        void visit(BlockView block, int row, long castTime);
+    }
+
+    /**
+     * Column buffers of the block being read, allocated once per query.
+     */
+    private static final class BlockView {
+        private final ByteBuffer[] columns = new ByteBuffer[Column.values().length];
+
+        BlockView() {
+            for (Column column : Column.values()) {
+                columns[column.ordinal()] = ByteBuffer.allocate(BLOCK_ROWS * column.width);
+            }
+        }
+
+        ByteBuffer load(FileChannel channel, long blockPosition, int rows, Column column) throws IOException {
+            ByteBuffer buffer = columns[column.ordinal()];
+            buffer.clear().limit(rows * column.width);
+            long position = blockPosition + BLOCK_HEADER_BYTES + (long) column.offsetPerRow * rows;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Truncated block");
+            }
+            return buffer;
+        }
+
+        ByteBuffer get(Column column) {
+            return columns[column.ordinal()];
+        }
+    }
+
+    /**
+     * Stored columns, in file order. Only append new columns together with a version bump.
+     */
+    enum Column {
+        CAST_TIME(8),
+        FISHING_AT(4),
+        BOBBER_AT(4),
+        SPLASH_AT(4),
+        INTERACT_AT(4),
+        LOOT_AT(4),
+        END_AT(4),
+        SCAN_MICROS(4),
+        SCORE(4),
+        X(4),
+        Y(4),
+        CANDIDATE(1),
+        AUDIO_PEAK(4),
+        THRESHOLD(4),
+        BRIDGE_STATES(1),
+        OUTCOME(1);
+
+        static final int ROW_BYTES;
+
+        static {
+            int offset = 0;
+            for (Column column : values()) {
+                column.offsetPerRow = offset;
+                offset += column.width;
+            }
+            ROW_BYTES = offset;
+        }
+
+        final int width;
+        // Bytes per row of all earlier columns, times the row count gives the column's offset in a block
+        int offsetPerRow;
+
+        Column(int width) {
+            this.width = width;
+        }
+    }
+}
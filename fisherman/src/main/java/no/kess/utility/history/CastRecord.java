@@ -0,0 +1,125 @@
+package no.kess.utility.history;
+
+/**
+ * One fishing cycle, filled in by the engine as the cycle runs and reused for the next one.
+ * <p>
+ * Phase times are stored as milliseconds after the cast, or {@link #NOT_REACHED} for phases the cycle never got to.
+ */
+public final class CastRecord {
+    public static final int NOT_REACHED = -1;
+
+    // Bridge states seen during the cycle, see addBridgeState
+    public static final int SEEN_FISHING = 1;
+    public static final int SEEN_CAUGHT = 2;
+    public static final int SEEN_TOO_FAR = 4;
+    public static final int SEEN_BAGS_FULL = 8;
+    public static final int SEEN_EXTENDED = 16;
+
+    long castTime;
+    int fishingAt;
+    int bobberAt;
+    int splashAt;
+    int interactAt;
+    int lootAt;
+    int endAt;
+    int scanMicros;
+    float score;
+    int x;
+    int y;
+    int candidate;
+    float audioPeak;
+    float threshold;
+    int bridgeStates;
+    Outcome outcome;
+    private boolean open;
+
+    /**
+     * Starts a new cycle at the moment of the cast.
+     */
+    public void begin(long castTimeMillis) {
+        castTime = castTimeMillis;
+        fishingAt = NOT_REACHED;
+        bobberAt = NOT_REACHED;
+        splashAt = NOT_REACHED;
+        interactAt = NOT_REACHED;
+        lootAt = NOT_REACHED;
+        endAt = NOT_REACHED;
+        scanMicros = NOT_REACHED;
+        score = 0;
+        x = 0;
+        y = 0;
+        candidate = NOT_REACHED;
+        audioPeak = 0;
+        threshold = 0;
+        bridgeStates = 0;
+        outcome = null;
+        open = true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void markFishing(long timeMillis) {
+        fishingAt = offset(timeMillis);
+    }
+
+    public void markBobber(long timeMillis, double bestScore, int bestX, int bestY) {
+        bobberAt = offset(timeMillis);
+        score = (float) bestScore;
+        x = bestX;
+        y = bestY;
+    }
+
+    public void markScan(long scanNanos) {
+        scanMicros = (int) Math.min(Integer.MAX_VALUE, scanNanos / 1000);
+    }
+
+    public void markSplash(long timeMillis) {
+        splashAt = offset(timeMillis);
+    }
+
+    public void setAudio(double peak, double usedThreshold) {
+        audioPeak = (float) peak;
+        threshold = (float) usedThreshold;
+    }
+
+    public void markInteract(long timeMillis, int candidateIndex) {
+        interactAt = offset(timeMillis);
+        candidate = candidateIndex;
+    }
+
+    public void markLoot(long timeMillis) {
+        lootAt = offset(timeMillis);
+    }
+
+    public void addBridgeState(int states) {
+        bridgeStates |= states;
+    }
+
+    /**
+     * Closes the cycle. A closed record is ignored until the next {@link #begin}.
+     */
+    public void end(long timeMillis, Outcome cycleOutcome) {
+        endAt = offset(timeMillis);
+        outcome = cycleOutcome;
+        open = false;
+    }
+
+    private int offset(long timeMillis) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, timeMillis - castTime));
+    }
+
+    /**
+     * How a cycle ended. Stored by ordinal, so only append new values.
+     */
+    public enum Outcome {
+        CAUGHT,
+        TOO_FAR,
+        TIMEOUT,
+        NOT_FOUND,
+        CAST_FAILED,
+        NO_LOOT,
+        ABORTED
+    }
+}
@@ -0,0 +1,158 @@
+package no.kess.utility.history;
+
+import no.kess.utility.audio.P2Quantile;
+
+/**
+ * Aggregates over a range of the cast history, built in one streaming pass with constant memory.
+ */
+public final class HistorySummary {
+    private final long fromMillis;
+    private final long toMillis;
+    private final long[] outcomes = new long[CastRecord.Outcome.values().length];
+    private final Distribution caughtScores = new Distribution();
+    private final Distribution missedScores = new Distribution();
+    private final Distribution caughtPeaks = new Distribution();
+    private final Distribution timeoutPeaks = new Distribution();
+    private long casts;
+    private long activeMillis;
+
+    HistorySummary(long fromMillis, long toMillis) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    void add(CastRecord.Outcome outcome, int endAt, float score, float audioPeak) {
+        casts++;
+        outcomes[outcome.ordinal()]++;
+        if (endAt > 0) activeMillis += endAt;
+        switch (outcome) {
+            case CAUGHT:
+                caughtScores.add(score);
+                caughtPeaks.add(audioPeak);
+                break;
+            case TOO_FAR:
+            case NO_LOOT:
+                missedScores.add(score);
+                break;
+            case TIMEOUT:
+                missedScores.add(score);
+                timeoutPeaks.add(audioPeak);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public long getCasts() {
+        return casts;
+    }
+
+    public long getCount(CastRecord.Outcome outcome) {
+        return outcomes[outcome.ordinal()];
+    }
+
+    /**
+     * @return Catches per hour of time spent in fishing cycles, so breaks between sessions don't count.
+     */
+    public double getCatchesPerHour() {
+        if (activeMillis == 0) return 0;
+        return getCount(CastRecord.Outcome.CAUGHT) / (activeMillis / 3_600_000.0);
+    }
+
+    /**
+     * Detection scores of casts that caught a fish.
+     */
+    public Distribution getCaughtScores() {
+        return caughtScores;
+    }
+
+    /**
+     * Detection scores of casts that found a bobber but caught nothing.
+     */
+    public Distribution getMissedScores() {
+        return missedScores;
+    }
+
+    /**
+     * Audio peaks while listening on casts that caught a fish, i.e. what a splash sounds like.
+     */
+    public Distribution getCaughtPeaks() {
+        return caughtPeaks;
+    }
+
+    /**
+     * Audio peaks while listening on casts that timed out, i.e. the loudest the background got.
+     */
+    public Distribution getTimeoutPeaks() {
+        return timeoutPeaks;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(casts).append(" casts, ").append(getCount(CastRecord.Outcome.CAUGHT)).append(" caught (")
+                .append(String.format("%.1f", getCatchesPerHour())).append("/h)");
+        StringBuilder misses = new StringBuilder();
+        for (CastRecord.Outcome outcome : CastRecord.Outcome.values()) {
+            if (outcome != CastRecord.Outcome.CAUGHT && getCount(outcome) > 0) {
+                if (misses.length() > 0) misses.append(", ");
+                misses.append(outcome).append(' ').append(getCount(outcome));
+            }
+        }
+        if (misses.length() > 0) sb.append(", misses: ").append(misses);
+        return sb.toString();
+    }
+
+    /**
+     * Streaming count, mean and 10th/50th/90th percentile of a value.
+     */
+    public static final class Distribution {
+        private final P2Quantile p10 = new P2Quantile(0.1);
+        private final P2Quantile p50 = new P2Quantile(0.5);
+        private final P2Quantile p90 = new P2Quantile(0.9);
+        private long count;
+        private double sum;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            p10.add(value);
+            p50.add(value);
+            p90.add(value);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        public double getP10() {
+            return p10.getEstimate();
+        }
+
+        public double getMedian() {
+            return p50.getEstimate();
+        }
+
+        public double getP90() {
+            return p90.getEstimate();
+        }
+
+        @Override
+        public String toString() {
+            if (count == 0) return "none";
+            return String.format("p10 %.2f, p50 %.2f, p90 %.2f (n=%d)", getP10(), getMedian(), getP90(), count);
+        }
+    }
+}
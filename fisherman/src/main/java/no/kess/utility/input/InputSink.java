@@ -0,0 +1,27 @@
+package no.kess.utility.input;
+
+/**
+ * Where the engine's key presses and mouse moves go: the real devices through {@link NativeInput}, or a simulated
+ * game.
+ */
+public interface InputSink {
+    /**
+     * Presses and releases a key, returning after the release.
+     */
+    void sendKey(int scanCode);
+
+    /**
+     * @return Whether the key with the given scan code is held down right now.
+     */
+    boolean isKeyPressed(int scanCode);
+
+    /**
+     * Moves the mouse to the given screen position, returning once it is there.
+     */
+    void mouseMove(int x, int y, int screenIndex);
+
+    /**
+     * @return The scan code of a {@link java.awt.event.KeyEvent} virtual key.
+     */
+    int getScanCode(int virtualKey);
+}
@@ -0,0 +1,35 @@
+package no.kess.utility.input;
+
+/**
+ * Sends input to the real keyboard and mouse through {@link NativeKeyboard} and {@link NativeMouse}.
+ */
+public class NativeInput implements InputSink {
+    // The last scan code looked up for isKeyPressed and its virtual key, packed so both change together
+    private volatile long lastMapping = -1;
+
+    @Override
+    public void sendKey(int scanCode) {
+        NativeKeyboard.sendKey(scanCode);
+    }
+
+    @Override
+    public boolean isKeyPressed(int scanCode) {
+        long mapping = lastMapping;
+        if (mapping == -1 || (int) (mapping >>> 32) != scanCode) {
+            int virtualKey = NativeKeyboard.User32Ext.INSTANCE.MapVirtualKey(scanCode, 1); // MAPVK_VSC_TO_VK = 1
+            mapping = ((long) scanCode << 32) | (virtualKey & 0xFFFFFFFFL);
+            lastMapping = mapping;
+        }
+        return NativeKeyboard.isKeyPressed((int) mapping);
+    }
+
+    @Override
+    public void mouseMove(int x, int y, int screenIndex) {
+        NativeMouse.mouseMove(x, y, screenIndex);
+    }
+
+    @Override
+    public int getScanCode(int virtualKey) {
+        return NativeKeyboard.getScanCode(virtualKey);
+    }
+}
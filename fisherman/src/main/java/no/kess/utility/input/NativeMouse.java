@@ -1,6 +1,7 @@
 package no.kess.utility.input;
 
 import no.kess.utility.util.Humanizer;
+import no.kess.utility.util.Log;
 
 import java.awt.*;
 import java.awt.event.InputEvent;
@@ -13,7 +14,7 @@ public class NativeMouse {
             robot = new Robot();
             robot.setAutoDelay(0);
         } catch (AWTException e) {
-            System.err.println("[ERROR] Could not initialize Robot for NativeMouse: " + e.getMessage());
+            Log.error("Could not initialize Robot for NativeMouse", e);
         }
     }
 
@@ -0,0 +1,74 @@
+package no.kess.utility.sim;
+
+import no.kess.utility.audio.LevelHistory;
+import no.kess.utility.audio.LevelSource;
+import no.kess.utility.audio.NoiseFloorEstimator;
+import no.kess.utility.util.Clock;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Samples the simulated game's volume and splash band levels on the clock into a {@link LevelHistory}, with the same
+ * noise floor estimation as the {@link no.kess.utility.audio.AudioMonitor}.
+ */
+public class SimAudio implements LevelSource {
+    private static final long HOP_MS = 10;
+    private static final long HOPS_PER_SECOND = 1000 / HOP_MS;
+    private static final int NOISE_WINDOW_SECONDS = 60;
+    private static final int NOISE_WARMUP_SECONDS = 3;
+
+    private final SimWorld world;
+    private final Clock clock;
+    private final LevelHistory levelHistory;
+    private final NoiseFloorEstimator volumeFloor;
+    private final NoiseFloorEstimator splashFloor;
+    private Clock.Scheduler capture;
+
+    public SimAudio(SimWorld world, Clock clock, double noiseQuantile, double noiseMargin) {
+        this.world = world;
+        this.clock = clock;
+        this.levelHistory = new LevelHistory(clock);
+        this.volumeFloor = new NoiseFloorEstimator(noiseQuantile, noiseMargin, NOISE_WINDOW_SECONDS * HOPS_PER_SECOND,
+                NOISE_WARMUP_SECONDS * HOPS_PER_SECOND);
+        this.splashFloor = new NoiseFloorEstimator(noiseQuantile, noiseMargin, NOISE_WINDOW_SECONDS * HOPS_PER_SECOND,
+                NOISE_WARMUP_SECONDS * HOPS_PER_SECOND);
+    }
+
+    public synchronized void start() {
+        if (capture != null) return;
+        capture = clock.newScheduler("SimAudio");
+        capture.scheduleAtFixedRate(this::sample, HOP_MS);
+    }
+
+    public synchronized void stop() {
+        if (capture != null) {
+            capture.shutdownNow();
+            capture = null;
+        }
+    }
+
+    private void sample() {
+        long now = clock.currentTimeMillis();
+        double volume = world.getVolume(now);
+        double splash = world.getSplashScore(now);
+        volumeFloor.add(volume);
+        splashFloor.add(splash);
+        levelHistory.record(now, volume, splash);
+    }
+
+    @Override
+    public double getDynamicThreshold(LevelHistory.Signal signal) {
+        return signal == LevelHistory.Signal.SPLASH_BAND ? splashFloor.getThreshold() : volumeFloor.getThreshold();
+    }
+
+    @Override
+    public double maxLevelSince(LevelHistory.Signal signal, long sinceMillis) {
+        return levelHistory.maxSince(signal, sinceMillis);
+    }
+
+    @Override
+    public LevelHistory.Subscription onLevelAbove(LevelHistory.Signal signal, double threshold, long afterMillis,
+                                                  DoubleConsumer callback) {
+        return levelHistory.subscribeAbove(signal, threshold, afterMillis, callback);
+    }
+}
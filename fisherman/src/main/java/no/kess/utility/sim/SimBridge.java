@@ -0,0 +1,117 @@
+package no.kess.utility.sim;
+
+import no.kess.utility.engine.FrameSource;
+import no.kess.utility.engine.PixelBridge;
+import no.kess.utility.engine.StatusBridge;
+import no.kess.utility.util.Clock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Samples the status strip of a simulated screen on the clock, like the {@link PixelBridge} sampler does on the real
+ * one, and decodes it with {@link PixelBridge#decode}. Changes are published on the clock's scheduler.
+ */
+public class SimBridge implements StatusBridge {
+    private static final int CELL_SIZE = 2;
+    private static final int STRIP_WIDTH = 3 * CELL_SIZE;
+    private static final long FROZEN_AFTER_MS = 500;
+
+    private final FrameSource screen;
+    private final Clock clock;
+    private final long sampleIntervalMs;
+    private final List<Consumer<PixelBridge.Status>> listeners = new CopyOnWriteArrayList<>();
+    private final int[] strip = new int[STRIP_WIDTH];
+    private volatile int offsetX;
+    private volatile int offsetY;
+    private volatile PixelBridge.Status latest;
+    private Clock.Scheduler sampler;
+    private long sequence;
+    private int lastFrameSequence = -1;
+    private volatile long lastFrameTime;
+
+    public SimBridge(FrameSource screen, Clock clock, long sampleIntervalMs) {
+        this.screen = screen;
+        this.clock = clock;
+        this.sampleIntervalMs = Math.max(1, sampleIntervalMs);
+    }
+
+    @Override
+    public void setOffset(int x, int y) {
+        offsetX = x;
+        offsetY = y;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (sampler != null) return;
+        sampler = clock.newScheduler("SimBridge");
+        sampler.scheduleAtFixedRate(this::sample, sampleIntervalMs);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    private void sample() {
+        long now = clock.currentTimeMillis();
+        screen.readRow(offsetX, offsetY, STRIP_WIDTH, strip, 0);
+        int legacy = strip[0];
+        int cell1 = strip[CELL_SIZE];
+        int cell2 = strip[2 * CELL_SIZE];
+        PixelBridge.Status current = latest;
+        PixelBridge.Status status = PixelBridge.decode(legacy, cell1, cell2, sequence + 1, now);
+        if (status.isExtended()) {
+            int frameSequence = (cell1 >> 16) & 0xFF;
+            if (frameSequence != lastFrameSequence) {
+                lastFrameSequence = frameSequence;
+                lastFrameTime = now;
+            }
+        }
+        // Only a change of state is published, the frame sequence alone is not
+        if (current == null || !sameState(current, status)) {
+            sequence++;
+            latest = status;
+            for (Consumer<PixelBridge.Status> listener : listeners) {
+                listener.accept(status);
+            }
+        }
+    }
+
+    private static boolean sameState(PixelBridge.Status a, PixelBridge.Status b) {
+        return a.isExtended() == b.isExtended() && a.getRGB() == b.getRGB() && a.isFishing() == b.isFishing()
+                && a.isCaught() == b.isCaught() && a.isTooFar() == b.isTooFar() && a.isBagsFull() == b.isBagsFull()
+                && a.getFreeBagSlots() == b.getFreeBagSlots() && a.getLootCount() == b.getLootCount()
+                && a.getTooFarCount() == b.getTooFarCount();
+    }
+
+    @Override
+    public PixelBridge.Status getStatus() {
+        PixelBridge.Status current = latest;
+        if (current != null) return current;
+        int[] row = new int[STRIP_WIDTH];
+        screen.readRow(offsetX, offsetY, STRIP_WIDTH, row, 0);
+        return PixelBridge.decode(row[0], row[CELL_SIZE], row[2 * CELL_SIZE], 0, clock.currentTimeMillis());
+    }
+
+    @Override
+    public boolean isFrozen() {
+        PixelBridge.Status current = latest;
+        return current != null && current.isExtended() && clock.currentTimeMillis() - lastFrameTime > FROZEN_AFTER_MS;
+    }
+
+    @Override
+    public void addListener(Consumer<PixelBridge.Status> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Consumer<PixelBridge.Status> listener) {
+        listeners.remove(listener);
+    }
+}
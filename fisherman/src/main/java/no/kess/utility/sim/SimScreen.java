@@ -0,0 +1,108 @@
+package no.kess.utility.sim;
+
+import no.kess.utility.engine.FrameSource;
+import no.kess.utility.engine.ScreenCaptureService;
+import no.kess.utility.util.Clock;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Renders the simulated game's screen: noisy blue-green water, the bobber and any spell effect from the
+ * {@link SimWorld}, and the addon's status strip in the top-left corner. Every capture is a fresh frame.
+ */
+public class SimScreen implements FrameSource {
+    private static final int STRIP_CELLS = 3;
+    private static final int CELL_SIZE = 2;
+
+    private final SimWorld world;
+    private final Clock clock;
+    private final int[] background;
+    private final int[] cells = new int[STRIP_CELLS];
+
+    public SimScreen(SimWorld world, Clock clock, long seed) {
+        this.world = world;
+        this.clock = clock;
+        this.background = renderWater(seed);
+    }
+
+    private static int[] renderWater(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[SimWorld.SCREEN.width * SimWorld.SCREEN.height];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = 20 + random.nextInt(30);
+            int g = 60 + random.nextInt(50);
+            int b = 90 + random.nextInt(60);
+            pixels[i] = (r << 16) | (g << 8) | b;
+        }
+        // A few isolated hot pixels of pure red, like UI or spell effects
+        for (int i = 0; i < 20; i++) {
+            pixels[random.nextInt(pixels.length)] = 0xFF0000;
+        }
+        return pixels;
+    }
+
+    @Override
+    public ScreenCaptureService.Frame capture(Rectangle area, long maxAgeMs) {
+        long now = clock.currentTimeMillis();
+        int[] pixels = new int[area.width * area.height];
+        Rectangle visible = area.intersection(SimWorld.SCREEN);
+        for (int y = visible.y; y < visible.y + visible.height; y++) {
+            System.arraycopy(background, y * SimWorld.SCREEN.width + visible.x,
+                    pixels, (y - area.y) * area.width + (visible.x - area.x), visible.width);
+        }
+        Point decoy = world.getDecoy(now);
+        if (decoy != null) {
+            drawDisc(pixels, area, decoy, SimWorld.DECOY_RADIUS, 0xE03010);
+        }
+        Point bobber = world.getBobber(now);
+        if (bobber != null) {
+            drawDisc(pixels, area, bobber, SimWorld.BOBBER_RADIUS, 0xD02020);
+        }
+        if (area.intersects(0, 0, STRIP_CELLS * CELL_SIZE, CELL_SIZE)) {
+            world.paintStrip(now, cells);
+            for (int y = Math.max(0, area.y); y < Math.min(CELL_SIZE, area.y + area.height); y++) {
+                for (int x = Math.max(0, area.x); x < Math.min(STRIP_CELLS * CELL_SIZE, area.x + area.width); x++) {
+                    pixels[(y - area.y) * area.width + (x - area.x)] = cells[x / CELL_SIZE];
+                }
+            }
+        }
+        return ScreenCaptureService.Frame.wrap(pixels, area.x, area.y, area.width, area.height, now);
+    }
+
+    private static void drawDisc(int[] pixels, Rectangle area, Point center, int radius, int rgb) {
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                int x = center.x + dx;
+                int y = center.y + dy;
+                if (dx * dx + dy * dy > radius * radius || !area.contains(x, y)) continue;
+                // Some shading, so the disc is not a single flat colour
+                int shade = ((x * 31 + y * 17) & 0x1F) << 16;
+                pixels[(y - area.y) * area.width + (x - area.x)] = rgb - shade;
+            }
+        }
+    }
+
+    @Override
+    public void readRow(int x, int y, int width, int[] dest, long maxAgeMs) {
+        boolean inStrip = y >= 0 && y < CELL_SIZE;
+        if (inStrip) {
+            world.paintStrip(clock.currentTimeMillis(), cells);
+        }
+        for (int i = 0; i < width; i++) {
+            int px = x + i;
+            if (inStrip && px >= 0 && px < STRIP_CELLS * CELL_SIZE) {
+                dest[i] = cells[px / CELL_SIZE];
+            } else if (SimWorld.SCREEN.contains(px, y)) {
+                dest[i] = background[y * SimWorld.SCREEN.width + px];
+            } else {
+                dest[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public Rectangle getScreenBounds(int screenIndex) {
+        return screenIndex == 0 ? new Rectangle(SimWorld.SCREEN) : null;
+    }
+}
@@ -0,0 +1,336 @@
+package no.kess.utility.sim;
+
+import no.kess.utility.config.AppConfig;
+import no.kess.utility.config.Settings;
+import no.kess.utility.engine.PixelBridge;
+import no.kess.utility.input.InputSink;
+import no.kess.utility.input.NativeKeyboard;
+import no.kess.utility.util.Clock;
+import no.kess.utility.util.Humanizer;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The simulated game: a character fishing in a pond, driven by the engine's key presses and mouse moves.
+ * <p>
+ * A cast puts a bobber in the water; a fish bites at a random time with a splash and can then be looted for a short
+ * window with the mouse over the bobber, else it gets away. Casts sometimes fail, some fish never bite before the
+ * channel runs out, a red spell effect can float near the bobber, and other sounds that are loud but not splash-like
+ * play now and then. The world schedules nothing itself: whenever something reads it, it first catches up to the
+ * clock. Key presses and mouse moves take their usual time on the clock.
+ */
+public class SimWorld implements InputSink {
+    public static final Rectangle SCREEN = new Rectangle(0, 0, 1920, 1080);
+    // Where casts land, inside the engine's default search area for SCREEN
+    static final Rectangle WATER = new Rectangle(580, 330, 760, 320);
+    static final int BOBBER_RADIUS = 6;
+    static final int DECOY_RADIUS = 7;
+    private static final long NONE = Long.MIN_VALUE;
+    // Key press to the channel starting, and to the bobber settling on the water
+    private static final long CAST_DELAY_MS = 300;
+    private static final long LAND_DELAY_MS = 500;
+    private static final long CHANNEL_MS = 21000;
+    private static final long BITE_MIN_MS = 2000;
+    private static final long BITE_MAX_MS = 17000;
+    private static final long BITE_WINDOW_MS = 2500;
+    // The addon holds 'caught' and 'too far' this long
+    private static final long FLAG_HOLD_MS = 2000;
+    private static final int INTERACT_RADIUS = 30;
+    private static final long SOUND_MS = 1200;
+
+    private final AppConfig config;
+    private final Clock clock;
+    // Separate streams, so how often the levels are sampled does not change what happens on the water
+    private final Random events;
+    private final Random noise;
+    private final List<double[]> sounds = new ArrayList<>(); // start, volume peak, splash band peak
+
+    private double noBiteChance = 0.05;
+    private double castFailChance = 0.02;
+    private double decoyChance = 0.1;
+    private double otherSoundsPerMinute = 0.5;
+    private int freeSlots = 500;
+
+    private long channelStart = NONE;
+    private long channelEnd;
+    private long biteAt;
+    private boolean biteHeard;
+    private Point bobber;
+    private Point decoy;
+    private final Point mouse = new Point(SCREEN.width / 2, SCREEN.height / 2);
+    private long caughtUntil = NONE;
+    private long tooFarUntil = NONE;
+    private int lootCount;
+    private int tooFarCount;
+    private long nextOtherSound;
+
+    private int casts;
+    private int failedCasts;
+    private int bites;
+    private int looted;
+    private int escaped;
+    private int noBite;
+    private int tooFar;
+    private int pulledEarly;
+    private int otherSounds;
+
+    public SimWorld(AppConfig config, Clock clock, long seed) {
+        this.config = config;
+        this.clock = clock;
+        this.events = new Random(seed);
+        this.noise = new Random(seed + 1);
+        nextOtherSound = clock.currentTimeMillis() + nextOtherSoundDelay();
+    }
+
+    /**
+     * Chance that no fish bites before the channel runs out.
+     */
+    public void setNoBiteChance(double chance) {
+        noBiteChance = chance;
+    }
+
+    public void setCastFailChance(double chance) {
+        castFailChance = chance;
+    }
+
+    /**
+     * Chance that a red spell effect floats near the bobber for the whole cast.
+     */
+    public void setDecoyChance(double chance) {
+        decoyChance = chance;
+    }
+
+    /**
+     * Rate of sounds that are loud but outside the splash band, like spell effects and music swells.
+     */
+    public void setOtherSoundsPerMinute(double rate) {
+        otherSoundsPerMinute = rate;
+        nextOtherSound = clock.currentTimeMillis() + nextOtherSoundDelay();
+    }
+
+    public void setFreeSlots(int slots) {
+        freeSlots = slots;
+    }
+
+    @Override
+    public synchronized void sendKey(int scanCode) {
+        long now = clock.currentTimeMillis();
+        advance(now);
+        Settings settings = config.getSettings();
+        // Cast and interact are usually bound to one key, which interacts while the line is out
+        if (scanCode == settings.getInteractKey() && channelStart != NONE) {
+            interact(now);
+        } else if (scanCode == settings.getCastKey()) {
+            cast(now);
+        } else if (scanCode == NativeKeyboard.SCANCODE_ESC && channelStart != NONE) {
+            endChannel();
+        }
+        // Dwell between key down and key up, like NativeKeyboard
+        clock.sleep(Humanizer.getDelay(85, 20));
+    }
+
+    /**
+     * The simulation never holds a key, the harness stops the engine by its run time limit.
+     */
+    @Override
+    public boolean isKeyPressed(int scanCode) {
+        return false;
+    }
+
+    @Override
+    public void mouseMove(int x, int y, int screenIndex) {
+        // About as long as NativeMouse takes for the curve
+        clock.sleep(Humanizer.randomInt(200, 500));
+        synchronized (this) {
+            mouse.setLocation(x, y);
+        }
+    }
+
+    @Override
+    public int getScanCode(int virtualKey) {
+        return virtualKey;
+    }
+
+    private void cast(long now) {
+        if (channelStart != NONE) {
+            endChannel();
+        }
+        casts++;
+        if (events.nextDouble() < castFailChance) {
+            failedCasts++;
+            return;
+        }
+        channelStart = now + CAST_DELAY_MS;
+        biteAt = events.nextDouble() < noBiteChance ? NONE
+                : channelStart + BITE_MIN_MS + (long) (events.nextDouble() * (BITE_MAX_MS - BITE_MIN_MS));
+        channelEnd = biteAt == NONE ? channelStart + CHANNEL_MS : biteAt + BITE_WINDOW_MS;
+        biteHeard = false;
+        bobber = randomPointInWater(BOBBER_RADIUS);
+        decoy = null;
+        if (events.nextDouble() < decoyChance) {
+            Point p;
+            do {
+                p = randomPointInWater(DECOY_RADIUS);
+            } while (p.distance(bobber) < 4 * INTERACT_RADIUS);
+            decoy = p;
+        }
+    }
+
+    private void interact(long now) {
+        if (!isFishing(now)) return;
+        boolean onBobber = mouse.distance(bobber) <= INTERACT_RADIUS
+                && (decoy == null || mouse.distance(decoy) > mouse.distance(bobber));
+        if (!onBobber) {
+            tooFar++;
+            tooFarCount = (tooFarCount + 1) & 0xFF;
+            tooFarUntil = now + FLAG_HOLD_MS;
+            return;
+        }
+        if (biteAt != NONE && now >= biteAt) {
+            looted++;
+            lootCount = (lootCount + 1) & 0xFF;
+            caughtUntil = now + FLAG_HOLD_MS;
+            if (freeSlots > 0) freeSlots--;
+        } else {
+            pulledEarly++;
+        }
+        endChannel();
+    }
+
+    private void endChannel() {
+        channelStart = NONE;
+        bobber = null;
+        decoy = null;
+    }
+
+    /**
+     * Catches up with the clock: the bite splash, a fish getting away, the channel running out and other sounds.
+     */
+    private void advance(long now) {
+        if (channelStart != NONE) {
+            if (biteAt != NONE && !biteHeard && now >= biteAt) {
+                biteHeard = true;
+                bites++;
+                addSound(biteAt, Math.max(0.18, 0.40 + 0.08 * events.nextGaussian()),
+                        Math.max(0.20, 0.45 + 0.08 * events.nextGaussian()));
+            }
+            if (now >= channelEnd) {
+                if (biteAt != NONE) {
+                    escaped++;
+                } else {
+                    noBite++;
+                }
+                endChannel();
+            }
+        }
+        while (now >= nextOtherSound) {
+            otherSounds++;
+            addSound(nextOtherSound, Math.max(0.1, 0.25 + 0.05 * events.nextGaussian()),
+                    Math.max(0.0, 0.05 + 0.02 * events.nextGaussian()));
+            nextOtherSound += nextOtherSoundDelay();
+        }
+        sounds.removeIf(sound -> now - (long) sound[0] > SOUND_MS);
+    }
+
+    private long nextOtherSoundDelay() {
+        if (otherSoundsPerMinute <= 0) return Long.MAX_VALUE / 2;
+        // Exponential gaps make a Poisson process
+        return Math.max(1, (long) (-Math.log(1 - events.nextDouble()) * 60_000 / otherSoundsPerMinute));
+    }
+
+    private void addSound(long start, double volumePeak, double splashPeak) {
+        sounds.add(new double[]{start, volumePeak, splashPeak});
+    }
+
+    private Point randomPointInWater(int margin) {
+        return new Point(WATER.x + margin + events.nextInt(WATER.width - 2 * margin),
+                WATER.y + margin + events.nextInt(WATER.height - 2 * margin));
+    }
+
+    private boolean isFishing(long now) {
+        return channelStart != NONE && now >= channelStart;
+    }
+
+    /**
+     * @return The bobber's position once it settled on the water, or null.
+     */
+    synchronized Point getBobber(long now) {
+        advance(now);
+        return channelStart != NONE && now >= channelStart + LAND_DELAY_MS ? bobber : null;
+    }
+
+    /**
+     * @return The spell effect's position while the bobber is out, or null.
+     */
+    synchronized Point getDecoy(long now) {
+        advance(now);
+        return channelStart != NONE && now >= channelStart ? decoy : null;
+    }
+
+    /**
+     * Overall level: background noise plus every sound, rising over 60ms and then decaying.
+     */
+    synchronized double getVolume(long now) {
+        advance(now);
+        return 0.05 + 0.012 * Math.abs(noise.nextGaussian()) + soundLevel(now, 1);
+    }
+
+    /**
+     * Level in the splash band, where most of the background and the other sounds do not reach.
+     */
+    synchronized double getSplashScore(long now) {
+        advance(now);
+        return 0.02 + 0.006 * Math.abs(noise.nextGaussian()) + soundLevel(now, 2);
+    }
+
+    private double soundLevel(long now, int peakIndex) {
+        double level = 0;
+        for (double[] sound : sounds) {
+            double age = now - sound[0];
+            if (age < 0) continue;
+            double envelope = age < 60 ? age / 60 : Math.exp(-(age - 60) / 250);
+            level += sound[peakIndex] * envelope;
+        }
+        return level;
+    }
+
+    /**
+     * Paints the addon's three status cells the way {@code StatusHelper.lua} does.
+     */
+    synchronized void paintStrip(long now, int[] cells) {
+        advance(now);
+        boolean fishing = isFishing(now);
+        boolean caught = now < caughtUntil;
+        boolean showTooFar = now < tooFarUntil;
+        boolean bagsFull = freeSlots == 0;
+        int flags = (fishing ? PixelBridge.Status.FLAG_FISHING : 0) | (caught ? PixelBridge.Status.FLAG_CAUGHT : 0)
+                | (showTooFar ? PixelBridge.Status.FLAG_TOO_FAR : 0) | (bagsFull ? PixelBridge.Status.FLAG_BAGS_FULL : 0);
+        int blue = caught ? 255 : showTooFar ? 190 : 100; // Caught, too far or just the heartbeat
+        cells[0] = (bagsFull ? 0xFF0000 : 0) | (fishing ? 0xFF00 : 0) | blue;
+        // The game draws a frame about every 16ms
+        int frameSequence = (int) ((now / 16) & 0xFF);
+        cells[1] = (frameSequence << 16) | (flags << 8) | Math.min(255, freeSlots);
+        cells[2] = (lootCount << 16) | (tooFarCount << 8);
+        cells[2] |= PixelBridge.checksum(cells[1], cells[2]);
+    }
+
+    /**
+     * What actually happened on the water, to compare with what the engine recorded.
+     */
+    public synchronized String getSummary() {
+        return String.format("%d casts (%d failed), %d bites, %d looted, %d got away, %d never bit, %d too far, "
+                        + "%d pulled early, %d other sounds, %d free slots left",
+                casts, failedCasts, bites, looted, escaped, noBite, tooFar, pulledEarly, otherSounds, freeSlots);
+    }
+
+    public synchronized int getLooted() {
+        return looted;
+    }
+
+    public synchronized int getBites() {
+        return bites;
+    }
+}
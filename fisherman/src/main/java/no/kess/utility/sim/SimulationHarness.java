@@ -0,0 +1,170 @@
+package no.kess.utility.sim;
+
+import no.kess.utility.config.AppConfig;
+import no.kess.utility.engine.BotEngine;
+import no.kess.utility.history.HistorySummary;
+import no.kess.utility.util.Humanizer;
+import no.kess.utility.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the real {@link BotEngine} against the simulated game at accelerated time, headless, and reports what it did.
+ * <p>
+ * The settings, counters, history and latency export go to their own directory (a fresh temporary one by default), so
+ * a run never touches the tool's real files. Runs with the same seed and {@code --exact} are identical, which makes
+ * two builds of the engine directly comparable.
+ * <pre>
+ * java -cp fisherman/target/classes no.kess.utility.sim.SimulationHarness --minutes 120 --seed 7
+ *     [--exact] [--dir DIR] [--set key=value]... [--no-bite CHANCE] [--cast-fail CHANCE] [--decoy CHANCE]
+ *     [--other-sounds PER_MINUTE] [--bag-slots N]
+ * </pre>
+ * {@code --set} takes any key of {@code utility.properties}, e.g. {@code --set bandSplashDetection=true}.
+ */
+public final class SimulationHarness {
+    // Time the engine gets to finish its last cycle and log out after the run time limit
+    private static final long STOP_GRACE_MS = 2 * 60 * 1000L;
+
+    private SimulationHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int minutes = 60;
+        long seed = 1;
+        boolean exact = false;
+        File dir = null;
+        Properties overrides = new Properties();
+        Properties world = new Properties();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--minutes":
+                    minutes = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--exact":
+                    exact = true;
+                    break;
+                case "--dir":
+                    dir = new File(args[++i]);
+                    break;
+                case "--set":
+                    String[] pair = args[++i].split("=", 2);
+                    overrides.setProperty(pair[0].trim(), pair.length > 1 ? pair[1].trim() : "");
+                    break;
+                case "--no-bite":
+                case "--cast-fail":
+                case "--decoy":
+                case "--other-sounds":
+                case "--bag-slots":
+                    world.setProperty(arg, args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + arg);
+                    System.exit(2);
+            }
+        }
+        if (dir == null) {
+            dir = Files.createTempDirectory("fisherman-sim").toFile();
+        } else if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        writeSettings(new File(dir, "utility.properties"), minutes, overrides);
+
+        Humanizer.setSeed(seed);
+        Log.setLevel(Log.Level.WARN);
+        AppConfig config = new AppConfig(dir);
+        Log.setLevel(config.getLogLevel());
+        VirtualClock clock = new VirtualClock(System.currentTimeMillis(), !exact);
+        SimWorld game = new SimWorld(config, clock, seed);
+        configureWorld(game, world);
+        SimScreen screen = new SimScreen(game, clock, seed);
+        SimBridge bridge = new SimBridge(screen, clock, config.getBridgeSampleInterval());
+        SimAudio audio = new SimAudio(game, clock, config.getNoiseQuantile(), config.getNoiseMargin());
+        AtomicBoolean stopped = new AtomicBoolean();
+        BotEngine engine = new BotEngine(config, screen, bridge, audio, game, clock, status -> {
+        }, () -> stopped.set(true));
+
+        audio.start();
+        long start = clock.currentTimeMillis();
+        long wallStart = System.nanoTime();
+        engine.start();
+        if (!clock.runUntil(start + minutes * 60_000L + STOP_GRACE_MS, stopped::get)) {
+            Log.warn("The engine did not stop at its run time limit, stopping it.");
+            engine.stop();
+            clock.runUntil(clock.currentTimeMillis() + STOP_GRACE_MS, stopped::get);
+        }
+        long wallMs = Math.max(1, (System.nanoTime() - wallStart) / 1_000_000);
+        long simulatedMs = clock.currentTimeMillis() - start;
+        audio.stop();
+        bridge.stop();
+
+        HistorySummary summary = engine.getHistory().summarize(start, clock.currentTimeMillis() + 1);
+        System.out.printf("Simulated %s in %.1fs (%.0fx), seed %d%s, stopped: %s%n", engine.getSessionDurationFormatted(),
+                wallMs / 1000.0, simulatedMs / (double) wallMs, seed, exact ? ", exact" : "", engine.getStopReason());
+        System.out.println("Engine: " + summary);
+        System.out.printf("Cycles: %.1f/h%n", summary.getCasts() / (simulatedMs / 3_600_000.0));
+        System.out.println("Game: " + game.getSummary());
+        System.out.println("Bobber score, caught: " + summary.getCaughtScores());
+        System.out.println("Bobber score, missed: " + summary.getMissedScores());
+        System.out.println("Audio peak, caught: " + summary.getCaughtPeaks());
+        System.out.println("Audio peak, timed out: " + summary.getTimeoutPeaks());
+        System.out.println(engine.getLatencySummary());
+        System.out.println("Files in " + dir.getAbsolutePath());
+        Log.flush(1000);
+        System.exit(0);
+    }
+
+    /**
+     * Writes the settings for the run: the tool's defaults with the newer detection options on, the run time limit,
+     * and the overrides on top.
+     */
+    private static void writeSettings(File file, int minutes, Properties overrides) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("runTimeLimit", String.valueOf(minutes));
+        properties.setProperty("logLevel", "WARN");
+        // Off by default in the tool so upgrades keep the old detection; the simulation exercises them
+        properties.setProperty("detectionMode", "BLOB");
+        properties.setProperty("adaptiveRoi", "true");
+        properties.setProperty("expandingSearch", "true");
+        properties.putAll(overrides);
+        // There is no screen to draw on
+        properties.setProperty("showDetectionPoint", "false");
+        try (OutputStream output = new FileOutputStream(file)) {
+            properties.store(output, "Simulation settings");
+        }
+    }
+
+    private static void configureWorld(SimWorld game, Properties world) {
+        for (String key : world.stringPropertyNames()) {
+            String value = world.getProperty(key);
+            switch (key) {
+                case "--no-bite":
+                    game.setNoBiteChance(Double.parseDouble(value));
+                    break;
+                case "--cast-fail":
+                    game.setCastFailChance(Double.parseDouble(value));
+                    break;
+                case "--decoy":
+                    game.setDecoyChance(Double.parseDouble(value));
+                    break;
+                case "--other-sounds":
+                    game.setOtherSoundsPerMinute(Double.parseDouble(value));
+                    break;
+                case "--bag-slots":
+                    game.setFreeSlots(Integer.parseInt(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package no.kess.utility.sim;
+
+import no.kess.utility.util.Clock;
+import no.kess.utility.util.Log;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Discrete-event clock: every scheduler it creates shares one queue, and {@link #runUntil} runs the queued tasks in
+ * order of due time on the calling thread, jumping the clock straight to each one. Waiting costs nothing, so a session
+ * of hours plays out in seconds.
+ * <p>
+ * {@link #sleep} advances the clock as if the caller had been busy. With {@code chargeCompute} the clock also runs at
+ * wall speed while a task executes, so a slower scan makes the simulated cycle slower just like it would in the game;
+ * without it only sleeps and delays take time and a run with a fixed seed is exactly repeatable.
+ */
+public final class VirtualClock implements Clock {
+    private final long startMillis;
+    private final boolean chargeCompute;
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long nowNanos;
+    private long sequence;
+    // System.nanoTime() when the running task started, while charging compute
+    private long taskStartNanos;
+    private boolean inTask;
+
+    public VirtualClock(long startMillis, boolean chargeCompute) {
+        this.startMillis = startMillis;
+        this.chargeCompute = chargeCompute;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return startMillis + nanoTime() / 1_000_000;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        if (inTask && chargeCompute) {
+            return nowNanos + (System.nanoTime() - taskStartNanos);
+        }
+        return nowNanos;
+    }
+
+    @Override
+    public synchronized void sleep(long millis) {
+        nowNanos += Math.max(0, millis) * 1_000_000;
+    }
+
+    /**
+     * Nothing else runs while the caller is parked, so nothing can unpark it early: the clock jumps to the end of the
+     * wait.
+     */
+    @Override
+    public synchronized void parkNanos(Object blocker, long nanos) {
+        nowNanos += Math.max(0, nanos);
+    }
+
+    @Override
+    public Scheduler newScheduler(String name) {
+        return new VirtualScheduler(name);
+    }
+
+    /**
+     * Runs queued tasks in order until {@code done} holds or the next task is due after {@code untilMillis}, in which
+     * case the clock is left at {@code untilMillis}.
+     *
+     * @return Whether {@code done} holds.
+     */
+    public boolean runUntil(long untilMillis, BooleanSupplier done) {
+        long until = (untilMillis - startMillis) * 1_000_000;
+        while (!done.getAsBoolean()) {
+            Task task;
+            synchronized (this) {
+                task = queue.peek();
+                if (task == null || task.due > until) {
+                    nowNanos = Math.max(nowNanos, until);
+                    return false;
+                }
+                queue.poll();
+                nowNanos = Math.max(nowNanos, task.due);
+                if (task.periodNanos > 0) {
+                    // Fixed rate, but a task that fell behind a long sleep skips the missed runs instead of bursting
+                    task.due = Math.max(task.due + task.periodNanos, nowNanos);
+                    task.sequence = sequence++;
+                    queue.add(task);
+                }
+                inTask = true;
+                taskStartNanos = System.nanoTime();
+            }
+            try {
+                task.action.run();
+            } catch (RuntimeException e) {
+                Log.error("Simulated task on " + task.owner.name + " failed", e);
+                synchronized (this) {
+                    queue.remove(task);
+                }
+            } finally {
+                synchronized (this) {
+                    if (chargeCompute) {
+                        nowNanos += System.nanoTime() - taskStartNanos;
+                    }
+                    inTask = false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private synchronized void enqueue(VirtualScheduler owner, Runnable action, long delayMs, long periodMs) {
+        if (owner.shutdown) throw new RejectedExecutionException(owner.name + " is shut down");
+        Task task = new Task(owner, action, periodMs * 1_000_000);
+        task.due = nanoTime() + Math.max(0, delayMs) * 1_000_000;
+        task.sequence = sequence++;
+        queue.add(task);
+    }
+
+    private synchronized void shutdown(VirtualScheduler owner) {
+        owner.shutdown = true;
+        queue.removeIf(task -> task.owner == owner);
+    }
+
+    private final class VirtualScheduler implements Scheduler {
+        final String name;
+        boolean shutdown;
+
+        VirtualScheduler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            enqueue(this, task, 0, 0);
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            enqueue(this, task, delayMs, 0);
+        }
+
+        @Override
+        public void scheduleAtFixedRate(Runnable task, long periodMs) {
+            enqueue(this, task, periodMs, Math.max(1, periodMs));
+        }
+
+        @Override
+        public void shutdownNow() {
+            shutdown(this);
+        }
+    }
+
+    /**
+     * A queued task, ordered by due time and then by the order it was queued in.
+     */
+    private static final class Task implements Comparable<Task> {
+        final VirtualScheduler owner;
+        final Runnable action;
+        final long periodNanos;
+        long due;
+        long sequence;
+
+        Task(VirtualScheduler owner, Runnable action, long periodNanos) {
+            this.owner = owner;
+            this.action = action;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (due != other.due) return Long.compare(due, other.due);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,22 +1,33 @@
 package no.kess.utility.ui;
 
 import no.kess.utility.audio.AudioMonitor;
+import no.kess.utility.audio.LevelHistory;
+import no.kess.utility.audio.SplashDetector;
 import no.kess.utility.config.AppConfig;
+import no.kess.utility.config.Settings;
 import no.kess.utility.engine.BobberFinder;
 import no.kess.utility.engine.BotEngine;
+import no.kess.utility.engine.DetectionResult;
 import no.kess.utility.engine.PixelBridge;
+import no.kess.utility.history.HistorySummary;
 import no.kess.utility.input.NativeKeyboard;
 import no.kess.utility.input.NativeMouse;
 import no.kess.utility.util.Humanizer;
+import no.kess.utility.util.Log;
 
 import javax.sound.sampled.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AppUI extends JFrame {
     public static final int SCREEN_WIDTH = 650;
-    public static final int SCREEN_HEIGHT = 600;
+    public static final int SCREEN_HEIGHT = 630;
+    // Window of the cast history shown in the session report
+    private static final long HISTORY_REPORT_MS = 7L * 24 * 60 * 60 * 1000;
+    // The bridge sampler only runs while the bot does, so when idle the indicator reads the strip at this rate
+    private static final long IDLE_STATUS_REFRESH_MS = 500;
     private final AppConfig config;
     private final AudioMonitor audioMonitor;
     private final BotEngine botEngine;
@@ -27,7 +38,13 @@ public class AppUI extends JFrame {
     private JLabel fishCaughtLabel;
     private JLabel throwsLabel;
     private JProgressBar volumeBar;
+    private JProgressBar splashBar;
+    private final AtomicBoolean volumeUpdatePending = new AtomicBoolean();
+    // Only touched on the EDT
+    private PixelBridge.Status shownStatus;
+    private long shownStatusTime;
     private JTextField thresholdField;
+    private JLabel noiseFloorLabel;
     private JTextField reactionField;
     private JTextField castKeyField;
     private JTextField interactKeyField;
@@ -45,10 +62,18 @@ public class AppUI extends JFrame {
     public AppUI() {
         super("Utility Tool");
         this.config = new AppConfig();
+        applyLogSettings(config.getSettings());
+        config.addSettingsListener(this::applyLogSettings);
+        config.startWatching();
         this.pixelBridge = new PixelBridge();
+        // The engine runs the sampler while it fishes
+        pixelBridge.setSampleInterval(config.getBridgeSampleInterval());
 
         this.audioMonitor = new AudioMonitor(this::updateVolumeUI);
-        this.botEngine = new BotEngine(config, audioMonitor, this::updateBotStatusUI, this::onBotStoppedUI);
+        audioMonitor.setWindow(config.getAudioWindowSamples(), config.getAudioHopSamples());
+        audioMonitor.setSplashBands(SplashDetector.parseBands(config.getSplashBands()));
+        audioMonitor.setNoiseFloor(config.getNoiseQuantile(), config.getNoiseMargin());
+        this.botEngine = new BotEngine(config, audioMonitor, pixelBridge, this::updateBotStatusUI, this::onBotStoppedUI);
 
         setupUI();
         audioMonitor.start();
@@ -58,7 +83,10 @@ public class AppUI extends JFrame {
             public void windowClosing(WindowEvent e) {
                 botEngine.stop();
                 audioMonitor.stop();
+                pixelBridge.stop();
+                config.stopWatching();
                 config.save();
+                Log.flush(500);
                 System.exit(0);
             }
         });
@@ -70,25 +98,54 @@ public class AppUI extends JFrame {
         setVisible(true);
     }
 
-    private void updateVolumeUI(double vol) {
+    private void applyLogSettings(Settings settings) {
+        Log.setLevel(settings.getLogLevel());
+        Log.setFile(settings.getLogFile(), settings.getLogMaxKb() * 1024L, settings.getLogBackups());
+    }
+
+    private void updateVolumeUI(double ignored) {
+        // At most one refresh queued on the EDT, it reads the latest values when it runs
+        if (!volumeUpdatePending.compareAndSet(false, true)) return;
         SwingUtilities.invokeLater(() -> {
+            volumeUpdatePending.set(false);
+            double vol = audioMonitor.getCurrentVolume();
             volumeBar.setValue((int) (vol));
             volumeBar.setString(String.format("%.4f", vol));
+            double splash = audioMonitor.getSplashScore();
+            splashBar.setValue((int) splash);
+            splashBar.setString(String.format("%.4f", splash));
+            LevelHistory.Signal signal = config.isBandSplashDetection() ? LevelHistory.Signal.SPLASH_BAND : LevelHistory.Signal.VOLUME;
+            double noiseFloor = audioMonitor.getNoiseFloor(signal);
+            if (Double.isNaN(noiseFloor)) {
+                noiseFloorLabel.setText("Noise floor: measuring...");
+            } else {
+                noiseFloorLabel.setText(String.format("Noise floor: %.4f, dynamic threshold: %.4f (static: %.4f)",
+                        noiseFloor, audioMonitor.getDynamicThreshold(signal), config.getSplashThreshold()));
+            }
 
             // Connection & Fishing Status Check
-            int screenIdx = config.getScreenIndex();
-            GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
-            int x = 0, y = 0;
-            if (screenIdx >= 0 && screenIdx < screens.length) {
-                Rectangle bounds = screens[screenIdx].getDefaultConfiguration().getBounds();
-                x = bounds.x;
-                y = bounds.y;
+            long now = System.currentTimeMillis();
+            if (botEngine.isRunning() || shownStatus == null || now - shownStatusTime >= IDLE_STATUS_REFRESH_MS) {
+                if (!botEngine.isRunning()) {
+                    int screenIdx = config.getScreenIndex();
+                    GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+                    int x = 0, y = 0;
+                    if (screenIdx >= 0 && screenIdx < screens.length) {
+                        Rectangle bounds = screens[screenIdx].getDefaultConfiguration().getBounds();
+                        x = bounds.x;
+                        y = bounds.y;
+                    }
+                    pixelBridge.setOffset(x, y);
+                }
+                shownStatus = pixelBridge.getStatus();
+                shownStatusTime = now;
             }
-            pixelBridge.setOffset(x, y);
-            PixelBridge.Status status = pixelBridge.getStatus();
+            PixelBridge.Status status = shownStatus;
 
             if (!status.isAddonDetected()) {
                 statusIndicator.setColor(Color.RED);
+            } else if (pixelBridge.isFrozen()) {
+                statusIndicator.setColor(Color.ORANGE);
             } else if (status.isFishing()) {
                 statusIndicator.setColor(Color.GREEN);
             } else {
@@ -149,12 +206,22 @@ public class AppUI extends JFrame {
                 stopReasonMsg = "Error occurred";
             }
 
+            long now = System.currentTimeMillis();
+            HistorySummary history = botEngine.getHistory().summarize(now - HISTORY_REPORT_MS, now + 1);
+
             JOptionPane.showMessageDialog(this,
                     "Session Report:\n" +
                             "Stop Reason: " + stopReasonMsg + "\n" +
                             "Run Time: " + duration + "\n" +
                             "Throws: " + sessionThrows + "\n" +
-                            "Fish Caught: " + sessionFish,
+                            "Fish Caught: " + sessionFish + "\n" +
+                            "Recasts saved by fallback search: " + botEngine.getRecastsSaved() + "\n" +
+                            "Fallback stages (hits/attempts): " + botEngine.getFallbackSearchSummary() + "\n" +
+                            "Audio capture: " + audioMonitor.getCaptureSummary() + "\n\n" +
+                            "Latencies:\n" + botEngine.getLatencySummary() + "\n\n" +
+                            "Last 7 days: " + history + "\n" +
+                            "Bobber score, caught: " + history.getCaughtScores() + "\n" +
+                            "Bobber score, missed: " + history.getMissedScores(),
                     "Bot Stopped", JOptionPane.INFORMATION_MESSAGE);
         });
     }
@@ -202,7 +269,7 @@ public class AppUI extends JFrame {
     }
 
     private JPanel createConfigPanel() {
-        JPanel centerPanel = new JPanel(new GridLayout(15, 1, 5, 5));
+        JPanel centerPanel = new JPanel(new GridLayout(16, 1, 5, 5));
         centerPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         centerPanel.add(createAudioDevicePanel());
@@ -210,6 +277,7 @@ public class AppUI extends JFrame {
         centerPanel.add(createSearchAreaPanel());
         centerPanel.add(createVolumePanel());
         centerPanel.add(createThresholdPanel());
+        centerPanel.add(createAdaptiveThresholdPanel());
         centerPanel.add(createReactionTimePanel());
         centerPanel.add(createRunTimeLimitPanel());
         centerPanel.add(createCastKeyPanel());
@@ -314,6 +382,10 @@ public class AppUI extends JFrame {
         volumeBar = new JProgressBar(0, 100);
         volumeBar.setStringPainted(true);
         volPanel.add(volumeBar);
+        volPanel.add(new JLabel(" Splash band: "));
+        splashBar = new JProgressBar(0, 100);
+        splashBar.setStringPainted(true);
+        volPanel.add(splashBar);
         return volPanel;
     }
 
@@ -322,9 +394,31 @@ public class AppUI extends JFrame {
         threshPanel.add(new JLabel("Splash Threshold (0.0 - 1.0): "));
         thresholdField = new JTextField(String.valueOf(config.getSplashThreshold()), 10);
         threshPanel.add(thresholdField);
+
+        JCheckBox bandSplashCheckBox = new JCheckBox("Use splash band", config.isBandSplashDetection());
+        bandSplashCheckBox.setToolTipText("Trigger on the splash band score instead of the overall volume");
+        bandSplashCheckBox.addActionListener(e -> {
+            config.setBandSplashDetection(bandSplashCheckBox.isSelected());
+            config.save();
+        });
+        threshPanel.add(bandSplashCheckBox);
         return threshPanel;
     }
 
+    private JPanel createAdaptiveThresholdPanel() {
+        JPanel adaptivePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        JCheckBox adaptiveCheckBox = new JCheckBox("Auto threshold", config.isAdaptiveThreshold());
+        adaptiveCheckBox.setToolTipText("Use a threshold derived from the measured ambient noise instead of the fixed one");
+        adaptiveCheckBox.addActionListener(e -> {
+            config.setAdaptiveThreshold(adaptiveCheckBox.isSelected());
+            config.save();
+        });
+        adaptivePanel.add(adaptiveCheckBox);
+        noiseFloorLabel = new JLabel("Noise floor: measuring...");
+        adaptivePanel.add(noiseFloorLabel);
+        return adaptivePanel;
+    }
+
     private JPanel createReactionTimePanel() {
         JPanel reactPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         reactPanel.add(new JLabel("Reaction Delay (ms): "));
@@ -344,7 +438,7 @@ public class AppUI extends JFrame {
             public void keyPressed(KeyEvent e) {
                 int vk = e.getKeyCode();
                 int sc = NativeKeyboard.getScanCode(vk);
-                System.out.println("[DEBUG] Setting Cast Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
+                Log.info("Setting Cast Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
                 config.setCastKey(sc);
                 config.save();
                 castKeyField.setText(KeyEvent.getKeyText(vk));
@@ -365,7 +459,7 @@ public class AppUI extends JFrame {
             public void keyPressed(KeyEvent e) {
                 int vk = e.getKeyCode();
                 int sc = NativeKeyboard.getScanCode(vk);
-                System.out.println("[DEBUG] Setting Interact Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
+                Log.info("Setting Interact Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
                 config.setInteractKey(sc);
                 config.save();
                 interactKeyField.setText(KeyEvent.getKeyText(vk));
@@ -386,7 +480,7 @@ public class AppUI extends JFrame {
             public void keyPressed(KeyEvent e) {
                 int vk = e.getKeyCode();
                 int sc = NativeKeyboard.getScanCode(vk);
-                System.out.println("[DEBUG] Setting Stop Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
+                Log.info("Setting Stop Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
                 config.setStopKey(sc);
                 config.save();
                 stopKeyField.setText(KeyEvent.getKeyText(vk));
@@ -421,7 +515,7 @@ public class AppUI extends JFrame {
             public void keyPressed(KeyEvent e) {
                 int vk = e.getKeyCode();
                 int sc = NativeKeyboard.getScanCode(vk);
-                System.out.println("[DEBUG] Setting Lure Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
+                Log.info("Setting Lure Key: " + KeyEvent.getKeyText(vk) + " (Scan Code: 0x" + Integer.toHexString(sc) + ")");
                 config.setLureKey(sc);
                 config.save();
                 lureKeyField.setText(KeyEvent.getKeyText(vk));
@@ -458,23 +552,53 @@ public class AppUI extends JFrame {
         JButton testBtn = new JButton("Test Bobber Detection");
         testBtn.addActionListener(e -> {
             BobberFinder finder = new BobberFinder(config);
-            Point p = finder.findBobber();
-            if (p != null) {
+            DetectionResult result = finder.findBobber();
+            if (result.isFound()) {
+                Point p = result.getBest().getPosition();
                 if (config.isShowDetectionPoint()) {
                     DetectionOverlay.showAt(p);
                 }
                 int targetX = p.x + Humanizer.getGaussianInt(10, 25);
                 int targetY = p.y - Humanizer.getGaussianInt(10, 25);
                 NativeMouse.mouseMove(targetX, targetY, config.getScreenIndex());
-                JOptionPane.showMessageDialog(this, "Bobber found at " + p.x + ", " + p.y + "\nGaussian target: " + targetX + ", " + targetY + "\nMouse moved to target.");
+                JOptionPane.showMessageDialog(this, "Bobber found at " + p.x + ", " + p.y + "\nGaussian target: " + targetX + ", " + targetY + "\nMouse moved to target."
+                        + "\nCandidates: " + result.getCandidates().size() + ", scan time: " + String.format("%.2f", result.getScanTimeMs()) + "ms");
             } else {
                 JOptionPane.showMessageDialog(this, "Bobber NOT found.");
             }
         });
         testPanel.add(testBtn);
+
+        JButton calibrateBtn = new JButton("Calibrate Colours");
+        calibrateBtn.addActionListener(e -> calibrateColors());
+        testPanel.add(calibrateBtn);
+
+        JCheckBox useColorTableCheckBox = new JCheckBox("Use calibrated colours", config.isUseColorTable());
+        useColorTableCheckBox.addActionListener(e -> {
+            config.setUseColorTable(useColorTableCheckBox.isSelected());
+            config.save();
+        });
+        testPanel.add(useColorTableCheckBox);
         return testPanel;
     }
 
+    private void calibrateColors() {
+        JOptionPane.showMessageDialog(this, "Draw a box around the bobber.\nPress ESC to calibrate from the current detection instead.");
+        BobberFinder finder = new BobberFinder(config);
+        Rectangle box = AreaSelector.selectArea(this, config.getScreenIndex());
+        if (box != null) {
+            finder.calibrateColors(box);
+        } else {
+            DetectionResult result = finder.findBobber();
+            if (!result.isFound()) {
+                JOptionPane.showMessageDialog(this, "Bobber NOT found, nothing to calibrate from.");
+                return;
+            }
+            finder.calibrateColors(result.getBest());
+        }
+        JOptionPane.showMessageDialog(this, "Bobber colours calibrated and saved.");
+    }
+
     private JPanel createControlsPanel() {
         startStopButton = new JButton("Start Fishing");
         startStopButton.setFont(new Font("Segoe UI", Font.BOLD, 16));
@@ -502,7 +626,7 @@ public class AppUI extends JFrame {
             int lureInterval = Integer.parseInt(lureIntervalField.getText());
             int runLimit = Integer.parseInt(runTimeField.getText());
 
-            System.out.println("[DEBUG] Applying configuration - Threshold: " + thresh + ", Reaction: " + react + ", Lure: " + lureCheckBox.isSelected() + " every " + lureInterval + " mins, Limit: " + runLimit + " mins");
+            Log.info("Applying configuration - Threshold: " + thresh + ", Reaction: " + react + ", Lure: " + lureCheckBox.isSelected() + " every " + lureInterval + " mins, Limit: " + runLimit + " mins");
             config.setSplashThreshold(thresh);
             config.setReactionTime(react);
             config.setLureEnabled(lureCheckBox.isSelected());
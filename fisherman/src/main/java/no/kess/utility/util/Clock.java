@@ -0,0 +1,68 @@
+package no.kess.utility.util;
+
+/**
+ * Source of time for the engine: the current time, blocking waits and timers.
+ * <p>
+ * {@link #SYSTEM} is the wall clock. A simulation can substitute a virtual clock that runs scheduled tasks in time
+ * order as fast as they can execute, so a session of hours plays out in seconds.
+ */
+public interface Clock {
+    /**
+     * The wall clock, with timers on a real scheduler thread.
+     */
+    Clock SYSTEM = new SystemClock();
+
+    /**
+     * Milliseconds since the epoch, like {@link System#currentTimeMillis()}.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Monotonic nanoseconds for measuring intervals, like {@link System#nanoTime()}.
+     */
+    long nanoTime();
+
+    /**
+     * Blocks the calling thread for the given time.
+     */
+    void sleep(long millis);
+
+    /**
+     * Parks the calling thread for up to the given time, or until it is unparked with
+     * {@link java.util.concurrent.locks.LockSupport#unpark}. Callers re-check their condition afterwards, as with
+     * {@link java.util.concurrent.locks.LockSupport#parkNanos}; a virtual clock may simply advance its time.
+     */
+    void parkNanos(Object blocker, long nanos);
+
+    /**
+     * Creates a scheduler that runs its tasks one at a time, in order of their due time.
+     */
+    Scheduler newScheduler(String name);
+
+    /**
+     * A single-threaded timer.
+     */
+    interface Scheduler {
+        /**
+         * Runs the task as soon as possible.
+         *
+         * @throws java.util.concurrent.RejectedExecutionException after {@link #shutdownNow()}.
+         */
+        void execute(Runnable task);
+
+        /**
+         * Runs the task once after the delay.
+         */
+        void schedule(Runnable task, long delayMs);
+
+        /**
+         * Runs the task every {@code periodMs}, starting one period from now.
+         */
+        void scheduleAtFixedRate(Runnable task, long periodMs);
+
+        /**
+         * Drops every pending task and rejects new ones. A task that is running finishes.
+         */
+        void shutdownNow();
+    }
+}
@@ -5,6 +5,13 @@ import java.util.Random;
 public class Humanizer {
     private static final Random random = new Random();
 
+    /**
+     * Reseeds the shared random source, so a simulated session can be repeated exactly.
+     */
+    public static void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
     /**
      * Generates a delay based on a Gaussian distribution.
      *
@@ -0,0 +1,103 @@
+package no.kess.utility.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket log-linear latency histogram in microseconds.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so any value is within about 6% of its
+ * bucket and the whole range of a long fits in under a thousand counters. The counters are allocated up front and
+ * recording only increments one of them, so it is cheap enough for every cycle and safe to read from another thread.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(3); // count, sum, max
+
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(value));
+        totals.incrementAndGet(0);
+        totals.addAndGet(1, value);
+        long max;
+        while (value > (max = totals.get(2)) && !totals.compareAndSet(2, max, value)) {
+            // Retry, another thread raised the maximum
+        }
+    }
+
+    /**
+     * Records the time since {@code startNanos}, a {@link System#nanoTime()} value.
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        for (int i = 0; i < 3; i++) {
+            totals.set(i, 0);
+        }
+    }
+
+    public long getCount() {
+        return totals.get(0);
+    }
+
+    public long getMaxMicros() {
+        return totals.get(2);
+    }
+
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totals.get(1) / count;
+    }
+
+    /**
+     * @param quantile Between 0.0 and 1.0, e.g. 0.95.
+     * @return The middle of the bucket holding the quantile, capped at the maximum, or 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double quantile) {
+        long count = getCount();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long low = lowerBound(i);
+                long mid = low + (lowerBound(i + 1) - low) / 2;
+                return Math.min(mid, getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * One-line summary like {@code "p50 12.3ms, p95 40.1ms, p99 52.0ms (n=20)"}.
+     */
+    public String getSummary() {
+        if (getCount() == 0) return "no samples";
+        return String.format("p50 %.1fms, p95 %.1fms, p99 %.1fms (n=%d)", getPercentileMicros(0.50) / 1000.0,
+                getPercentileMicros(0.95) / 1000.0, getPercentileMicros(0.99) / 1000.0, getCount());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long bound = (SUB_BUCKETS + sub) << Math.min(exponent - SUB_BITS, 63 - SUB_BITS - 1);
+        return exponent >= 63 || bound < 0 ? Long.MAX_VALUE : bound;
+    }
+}
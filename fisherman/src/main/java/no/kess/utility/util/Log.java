@@ -0,0 +1,317 @@
+package no.kess.utility.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
+
+/**
+ * Small asynchronous logger with a runtime level.
+ * <p>
+ * Callers only check the level and copy the message into a slot of a fixed ring; a daemon writer thread prints the
+ * slots to the console and, if configured, to a file that rolls over at a size limit. When the ring is full new
+ * messages are dropped and counted instead of blocking, so a slow console never stalls the bot. Messages passed as a
+ * {@link Supplier} are only built when their level is enabled.
+ */
+public final class Log {
+    private static final int CAPACITY = 1024;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final Entry[] ring = new Entry[CAPACITY];
+    private static final Object lock = new Object();
+    private static volatile Level level = Level.INFO;
+    private static long head; // Next slot to write, guarded by lock
+    private static long tail; // Next slot to print, guarded by lock
+    private static long dropped; // Guarded by lock
+    private static Thread writer;
+
+    // File output, only touched by the writer thread once configured
+    private static volatile FileTarget pendingFile;
+    private static String fileSpec = ""; // Guarded by the class lock
+    private static FileTarget file;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Entry();
+        }
+    }
+
+    private Log() {
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal() && messageLevel != Level.OFF;
+    }
+
+    /**
+     * Also writes to {@code path}, rolling it to {@code path.1} ... {@code path.backups} when it grows past
+     * {@code maxBytes}. An empty path turns file output off.
+     */
+    public static synchronized void setFile(String path, long maxBytes, int backups) {
+        String spec = path == null || path.trim().isEmpty() ? "" : path.trim() + "|" + maxBytes + "|" + backups;
+        if (spec.equals(fileSpec)) return;
+        fileSpec = spec;
+        pendingFile = path == null || path.trim().isEmpty()
+                ? FileTarget.NONE : new FileTarget(new File(path.trim()), Math.max(1024, maxBytes), Math.max(0, backups));
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) log(Level.DEBUG, message.get(), null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    /**
+     * @return Number of messages dropped because the ring was full.
+     */
+    public static long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for everything logged so far to be written.
+     */
+    public static void flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            long target = head;
+            while (tail < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return;
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void log(Level messageLevel, String message, Throwable error) {
+        if (!isEnabled(messageLevel)) return;
+        long time = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        synchronized (lock) {
+            if (head - tail >= CAPACITY) {
+                dropped++;
+                return;
+            }
+            Entry entry = ring[(int) (head % CAPACITY)];
+            entry.time = time;
+            entry.level = messageLevel;
+            entry.thread = thread;
+            entry.message = message;
+            entry.error = error;
+            head++;
+            if (writer == null) {
+                writer = new Thread(Log::writeLoop, "LogWriter");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private static void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDropped = 0;
+        while (true) {
+            long time;
+            Level entryLevel;
+            String thread;
+            String message;
+            Throwable error;
+            long droppedNow;
+            synchronized (lock) {
+                while (head == tail && pendingFile == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                droppedNow = dropped;
+                if (head == tail) {
+                    time = 0;
+                    entryLevel = null;
+                    thread = null;
+                    message = null;
+                    error = null;
+                } else {
+                    Entry entry = ring[(int) (tail % CAPACITY)];
+                    time = entry.time;
+                    entryLevel = entry.level;
+                    thread = entry.thread;
+                    message = entry.message;
+                    error = entry.error;
+                    entry.message = null;
+                    entry.error = null;
+                }
+            }
+
+            FileTarget requested = pendingFile;
+            if (requested != null) {
+                pendingFile = null;
+                if (file != null) file.close();
+                file = requested == FileTarget.NONE ? null : requested;
+            }
+
+            if (droppedNow != reportedDropped) {
+                write("[WARN] Log buffer full, dropped " + (droppedNow - reportedDropped) + " messages", System.out);
+                reportedDropped = droppedNow;
+            }
+            if (entryLevel == null) continue;
+
+            line.setLength(0);
+            TIME_FORMAT.formatTo(Instant.ofEpochMilli(time), line);
+            line.append(" [").append(entryLevel).append("] [").append(thread).append("] ").append(message);
+            if (error != null) {
+                StringWriter trace = new StringWriter();
+                error.printStackTrace(new PrintWriter(trace));
+                line.append(System.lineSeparator()).append(trace.toString().trim());
+            }
+            write(line.toString(), entryLevel == Level.ERROR ? System.err : System.out);
+
+            synchronized (lock) {
+                tail++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static void write(String text, PrintStream console) {
+        console.println(text);
+        if (file != null) {
+            file.write(text);
+        }
+    }
+
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        OFF;
+
+        /**
+         * @return The level named by {@code text}, or {@code fallback} if there is none.
+         */
+        public static Level parse(String text, Level fallback) {
+            if (text == null) return fallback;
+            try {
+                return valueOf(text.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+
+    /**
+     * Reused ring slot, guarded by {@link #lock}.
+     */
+    private static final class Entry {
+        long time;
+        Level level;
+        String thread;
+        String message;
+        Throwable error;
+    }
+
+    private static final class FileTarget {
+        static final FileTarget NONE = new FileTarget(null, 0, 0);
+
+        private final File path;
+        private final long maxBytes;
+        private final int backups;
+        private Writer out;
+        private long size;
+
+        FileTarget(File path, long maxBytes, int backups) {
+            this.path = path;
+            this.maxBytes = maxBytes;
+            this.backups = backups;
+        }
+
+        void write(String text) {
+            try {
+                if (out == null) {
+                    size = path.length();
+                    out = new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8);
+                }
+                out.write(text);
+                out.write(System.lineSeparator());
+                out.flush();
+                size += text.length() + System.lineSeparator().length();
+                if (size >= maxBytes) {
+                    roll();
+                }
+            } catch (IOException e) {
+                System.err.println("[ERROR] Log file " + path + " failed, file output disabled: " + e.getMessage());
+                close();
+                file = null;
+            }
+        }
+
+        private void roll() {
+            close();
+            for (int i = backups; i >= 1; i--) {
+                File from = i == 1 ? path : new File(path.getPath() + "." + (i - 1));
+                File to = new File(path.getPath() + "." + i);
+                if (from.exists()) {
+                    to.delete();
+                    from.renameTo(to);
+                }
+            }
+            if (backups == 0) {
+                path.delete();
+            }
+        }
+
+        void close() {
+            if (out == null) return;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package no.kess.utility.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The wall clock behind {@link Clock#SYSTEM}.
+ */
+final class SystemClock implements Clock {
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void parkNanos(Object blocker, long nanos) {
+        LockSupport.parkNanos(blocker, nanos);
+    }
+
+    @Override
+    public Scheduler newScheduler(String name) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, name));
+        return new Scheduler() {
+            @Override
+            public void execute(Runnable task) {
+                executor.execute(task);
+            }
+
+            @Override
+            public void schedule(Runnable task, long delayMs) {
+                executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void scheduleAtFixedRate(Runnable task, long periodMs) {
+                executor.scheduleAtFixedRate(task, periodMs, periodMs, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void shutdownNow() {
+                executor.shutdownNow();
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package no.kess.utility.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AudioSensorTest {
+    private static byte[] pcm(short[] samples) {
+        byte[] bytes = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            bytes[2 * i] = (byte) samples[i];
+            bytes[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Plain RMS over the last {@code window} samples up to {@code end}, normalized like the sensor.
+     */
+    private static double plainRms(short[] samples, int end, int window) {
+        int start = Math.max(0, end - window);
+        long sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += (long) samples[i] * samples[i];
+        }
+        return end == start ? 0.0 : Math.sqrt(sum / (double) (end - start)) / 32768.0 * 100;
+    }
+
+    @Test
+    void slidingWindowIsIdenticalToPlainRms() {
+        Random random = new Random(3);
+        int window = 1024;
+        int hop = 128;
+        short[] samples = new short[window * 20];
+        for (int i = 0; i < samples.length; i++) {
+            // Quiet and loud passages, including full-scale samples
+            samples[i] = (short) (i / 2048 % 2 == 0 ? random.nextGaussian() * 300 : random.nextInt(65536) - 32768);
+        }
+        byte[] bytes = pcm(samples);
+
+        AudioSensor sensor = new AudioSensor(window, hop);
+        byte[] chunk = new byte[hop * 2];
+        for (int end = hop; end <= samples.length; end += hop) {
+            System.arraycopy(bytes, (end - hop) * 2, chunk, 0, chunk.length);
+            assertEquals(plainRms(samples, end, window), sensor.update(chunk, chunk.length), "after " + end + " samples");
+        }
+    }
+
+    @Test
+    void partialReadsAndAnOddByteCount() {
+        short[] samples = {1000, -2000, 3000, -4000, 5000};
+        byte[] bytes = pcm(samples);
+        AudioSensor sensor = new AudioSensor(4, 4);
+        assertEquals(0.0, sensor.getVolume());
+        // Three samples and the low byte of a fourth, which is ignored
+        assertEquals(plainRms(samples, 3, 4), sensor.update(bytes, 7));
+        byte[] rest = new byte[4];
+        System.arraycopy(bytes, 6, rest, 0, 4);
+        assertEquals(plainRms(samples, 5, 4), sensor.update(rest, 4));
+    }
+
+    @Test
+    void hopIsCappedAtTheWindow() {
+        AudioSensor sensor = new AudioSensor(256, 1024);
+        assertEquals(256, sensor.getWindowSamples());
+        assertEquals(256, sensor.getHopSamples());
+    }
+}
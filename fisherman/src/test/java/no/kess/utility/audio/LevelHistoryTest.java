@@ -0,0 +1,82 @@
+package no.kess.utility.audio;
+
+import no.kess.utility.sim.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static no.kess.utility.audio.LevelHistory.CAPACITY;
+import static no.kess.utility.audio.LevelHistory.NO_CROSSING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LevelHistoryTest {
+    private final LevelHistory history = new LevelHistory();
+
+    @Test
+    void maxSinceOnlySeesLevelsStillInTheRing() {
+        // A loud level, then enough quiet ones to lap its slot
+        history.record(0, 90.0, 0.0);
+        for (int i = 1; i <= CAPACITY; i++) {
+            history.record(i, 1.0, 0.0);
+        }
+        assertEquals(1.0, history.maxSince(LevelHistory.Signal.VOLUME, 0));
+
+        // The slot the writer fills next may be mid-write, so the oldest readable level is one newer than that
+        LevelHistory wrapped = new LevelHistory();
+        int records = 2 * CAPACITY + 17;
+        int nextSlotOwner = records - CAPACITY;
+        for (int i = 0; i < records; i++) {
+            double volume = i == nextSlotOwner ? 70.0 : i == nextSlotOwner + 1 ? 50.0 : 1.0;
+            wrapped.record(i, volume, i % 7);
+        }
+        assertEquals(50.0, wrapped.maxSince(LevelHistory.Signal.VOLUME, 0));
+        assertEquals(1.0, wrapped.maxSince(LevelHistory.Signal.VOLUME, nextSlotOwner + 2));
+        assertEquals(6.0, wrapped.maxSince(LevelHistory.Signal.SPLASH_BAND, 0));
+    }
+
+    @Test
+    void emptyHistoryHasNoLevel() {
+        assertEquals(0.0, history.maxSince(LevelHistory.Signal.VOLUME, 0));
+    }
+
+    @Test
+    void subscriptionFiresOnTheEarliestCrossingAlreadyRecorded() {
+        history.record(10, 5.0, 0.0);
+        history.record(20, 7.0, 0.0);
+        history.record(30, 9.0, 0.0);
+        List<Double> fired = new ArrayList<>();
+        history.subscribeAbove(LevelHistory.Signal.VOLUME, 6.0, 15, fired::add);
+        assertEquals(List.of(7.0), fired);
+
+        // Fires once only
+        history.record(40, 8.0, 0.0);
+        assertEquals(List.of(7.0), fired);
+    }
+
+    @Test
+    void subscriptionFiresOnALaterCrossingUnlessCancelled() {
+        List<Double> fired = new ArrayList<>();
+        history.subscribeAbove(LevelHistory.Signal.SPLASH_BAND, 0.5, 0, fired::add);
+        LevelHistory.Subscription cancelled = history.subscribeAbove(LevelHistory.Signal.SPLASH_BAND, 0.5, 0,
+                level -> fired.add(-level));
+        cancelled.cancel();
+        history.record(1, 99.0, 0.4);
+        assertTrue(fired.isEmpty());
+        history.record(2, 0.0, 0.8);
+        assertEquals(List.of(0.8), fired);
+    }
+
+    @Test
+    void awaitAboveTimesOutOnTheClock() {
+        VirtualClock clock = new VirtualClock(0, false);
+        LevelHistory timed = new LevelHistory(clock);
+        timed.record(0, 1.0, 0.0);
+        assertEquals(NO_CROSSING, timed.awaitAbove(LevelHistory.Signal.VOLUME, 2.0, 0, 500));
+        assertEquals(500, clock.currentTimeMillis());
+
+        timed.record(600, 3.0, 0.0);
+        assertEquals(3.0, timed.awaitAbove(LevelHistory.Signal.VOLUME, 2.0, 0, 500));
+    }
+}
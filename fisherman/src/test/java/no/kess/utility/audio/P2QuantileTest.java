@@ -0,0 +1,71 @@
+package no.kess.utility.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class P2QuantileTest {
+    private static double exactQuantile(double[] values, double quantile) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.round(quantile * (sorted.length - 1))];
+    }
+
+    @Test
+    void noObservationsHasNoEstimate() {
+        assertTrue(Double.isNaN(new P2Quantile(0.5).getEstimate()));
+    }
+
+    @Test
+    void fewObservationsUseTheNearestRank() {
+        P2Quantile median = new P2Quantile(0.5);
+        median.add(3);
+        median.add(1);
+        median.add(2);
+        assertEquals(2.0, median.getEstimate());
+        assertEquals(3, median.getCount());
+    }
+
+    @Test
+    void tracksQuantilesOfSkewedNoise() {
+        // Ambient noise levels are skewed: mostly quiet with a long tail
+        Random random = new Random(5);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -Math.log(1 - random.nextDouble());
+        }
+        for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+            P2Quantile estimator = new P2Quantile(quantile);
+            for (double value : values) {
+                estimator.add(value);
+            }
+            double exact = exactQuantile(values, quantile);
+            assertEquals(exact, estimator.getEstimate(), exact * 0.02, "quantile " + quantile);
+        }
+    }
+
+    @Test
+    void constantInputStaysExact() {
+        P2Quantile estimator = new P2Quantile(0.99);
+        for (int i = 0; i < 1000; i++) {
+            estimator.add(0.25);
+        }
+        assertEquals(0.25, estimator.getEstimate());
+    }
+
+    @Test
+    void resetStartsOver() {
+        P2Quantile estimator = new P2Quantile(0.5);
+        for (int i = 0; i < 100; i++) {
+            estimator.add(100 + i);
+        }
+        estimator.reset();
+        assertEquals(0, estimator.getCount());
+        estimator.add(1);
+        assertEquals(1.0, estimator.getEstimate());
+    }
+}
@@ -0,0 +1,98 @@
+package no.kess.utility.config;
+
+import no.kess.utility.util.Log;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static no.kess.utility.config.CounterStore.Counter.FISH_CAUGHT;
+import static no.kess.utility.config.CounterStore.Counter.THROWS;
+import static no.kess.utility.config.CounterStore.HEADER_BYTES;
+import static no.kess.utility.config.CounterStore.RECORD_BYTES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CounterStoreTest {
+    private static final long[] SEED = {100, 40};
+
+    @TempDir
+    File directory;
+
+    @BeforeAll
+    static void quiet() {
+        Log.setLevel(Log.Level.WARN);
+    }
+
+    private File file() {
+        return new File(directory, "utility.counters");
+    }
+
+    /**
+     * Flips a byte of the first counter in one copy, as a write cut short would leave it.
+     */
+    private void tear(int copy) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file(), "rw")) {
+            long position = HEADER_BYTES + (long) copy * RECORD_BYTES + 8;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x5A);
+        }
+    }
+
+    @Test
+    void newFileStartsFromTheSeedAndKeepsEveryIncrement() {
+        CounterStore store = CounterStore.open(file(), SEED);
+        assertEquals(100, store.get(THROWS));
+        assertEquals(40, store.get(FISH_CAUGHT));
+        store.increment(THROWS);
+        store.increment(FISH_CAUGHT);
+        store.set(THROWS, 250);
+
+        CounterStore reopened = CounterStore.open(file(), new long[]{0, 0});
+        assertEquals(250, reopened.get(THROWS));
+        assertEquals(41, reopened.get(FISH_CAUGHT));
+    }
+
+    @Test
+    void tornNewestCopyFallsBackToTheOtherOne() throws IOException {
+        // Creating writes generation 1 to copy 1, the increments alternate from there
+        CounterStore store = CounterStore.open(file(), SEED);
+        store.increment(THROWS); // generation 2, copy 0
+        store.increment(THROWS); // generation 3, copy 1
+        store.increment(THROWS); // generation 4, copy 0
+        tear(0);
+
+        CounterStore recovered = CounterStore.open(file(), new long[]{0, 0});
+        assertEquals(102, recovered.get(THROWS));
+        assertEquals(40, recovered.get(FISH_CAUGHT));
+
+        // The next write replaces the torn copy
+        recovered.increment(FISH_CAUGHT);
+        CounterStore reopened = CounterStore.open(file(), new long[]{0, 0});
+        assertEquals(102, reopened.get(THROWS));
+        assertEquals(41, reopened.get(FISH_CAUGHT));
+    }
+
+    @Test
+    void tornOlderCopyIsIgnored() throws IOException {
+        CounterStore store = CounterStore.open(file(), SEED);
+        store.increment(FISH_CAUGHT); // generation 2, copy 0
+        tear(1);
+        assertEquals(41, CounterStore.open(file(), new long[]{0, 0}).get(FISH_CAUGHT));
+    }
+
+    @Test
+    void noValidCopyStartsFromTheSeed() throws IOException {
+        CounterStore store = CounterStore.open(file(), SEED);
+        store.increment(THROWS);
+        tear(0);
+        tear(1);
+        CounterStore reseeded = CounterStore.open(file(), new long[]{7, 3});
+        assertEquals(7, reseeded.get(THROWS));
+        assertEquals(3, reseeded.get(FISH_CAUGHT));
+    }
+}
@@ -0,0 +1,113 @@
+package no.kess.utility.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobDetectorTest {
+    private static final int RED = 0xC81E1E;
+    private static final int WATER = 0x285A78;
+    private static final int SIZE = 64;
+
+    private final BlobDetector detector = new BlobDetector();
+    private final int[] pixels = new int[SIZE * SIZE];
+
+    BlobDetectorTest() {
+        Arrays.fill(pixels, WATER);
+    }
+
+    private void fill(int x0, int y0, int x1, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                pixels[y * SIZE + x] = RED;
+            }
+        }
+    }
+
+    private boolean detect(int step) {
+        return detector.detect(PixelScorer.REDNESS, pixels, 0, SIZE, SIZE, SIZE, step);
+    }
+
+    @Test
+    void armsOfAUAreMergedWhenTheBottomRowJoinsThem() {
+        // Two arms get separate labels until the bottom row reaches both
+        fill(10, 10, 12, 20);
+        fill(20, 10, 22, 20);
+        fill(10, 21, 22, 23);
+        assertTrue(detect(1));
+        assertEquals(1, detector.getBlobCount());
+        assertEquals(33 + 33 + 39, detector.getArea(0));
+    }
+
+    @Test
+    void statisticsOfMergedLabelsAddUp() {
+        // A staircase is joined through the diagonal neighbours only
+        for (int i = 0; i < 8; i++) {
+            pixels[(20 + i) * SIZE + 30 - i] = RED;
+        }
+        // A second arm that starts on the first row and meets the staircase at its end
+        for (int y = 20; y < 28; y++) {
+            pixels[y * SIZE + 22] = RED;
+        }
+        assertTrue(detect(1));
+        assertEquals(1, detector.getBlobCount());
+        assertEquals(16, detector.getArea(0));
+        // Centroid of all the merged samples
+        int sumX = 0;
+        int sumY = 0;
+        for (int i = 0; i < 8; i++) {
+            sumX += 30 - i;
+            sumY += 20 + i;
+        }
+        for (int y = 20; y < 28; y++) {
+            sumX += 22;
+            sumY += y;
+        }
+        assertEquals(sumX / 16, detector.getX(0));
+        assertEquals(sumY / 16, detector.getY(0));
+    }
+
+    @Test
+    void separateBlobsAreRankedAndABobberBeatsAHotPixel() {
+        pixels[5 * SIZE + 5] = 0xFF0000;
+        fill(30, 30, 35, 35);
+        fill(50, 10, 51, 11);
+        assertTrue(detect(1));
+        assertEquals(3, detector.getBlobCount());
+        assertEquals(3, detector.getCandidateCount());
+        assertEquals(32, detector.getX(0));
+        assertEquals(32, detector.getY(0));
+        assertEquals(36, detector.getArea(0));
+        assertTrue(detector.getScore(0) > detector.getScore(1));
+        assertTrue(detector.getScore(1) >= detector.getScore(2));
+    }
+
+    @Test
+    void sampledGridStillConnectsABlob() {
+        fill(20, 20, 29, 29);
+        assertTrue(detect(2));
+        assertEquals(1, detector.getBlobCount());
+        assertEquals(25, detector.getArea(0));
+    }
+
+    @Test
+    void nothingRedFindsNothing() {
+        assertFalse(detect(1));
+        assertEquals(0, detector.getCandidateCount());
+    }
+
+    @Test
+    void passedDeadlineStopsLabelling() {
+        fill(10, 50, 20, 60);
+        boolean found = detector.detect(PixelScorer.REDNESS, pixels, 0, SIZE, SIZE, SIZE, 1, System.nanoTime() - 1);
+        assertTrue(detector.isTruncated());
+        assertFalse(found);
+
+        assertTrue(detect(1));
+        assertFalse(detector.isTruncated());
+    }
+}
@@ -0,0 +1,201 @@
+package no.kess.utility.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PixelBridgeTest {
+    // Heartbeat only: addon present, idle
+    private static final int LEGACY_IDLE = 0x000064;
+
+    private static int cell1(int sequence, int flags, int slots) {
+        return sequence << 16 | flags << 8 | slots;
+    }
+
+    private static int cell2(int cell1, int loot, int tooFar) {
+        int cell2 = loot << 16 | tooFar << 8;
+        return cell2 | PixelBridge.checksum(cell1, cell2);
+    }
+
+    @Test
+    void checksumMatchesTheAddon() {
+        // (10 + 3 * 3 + 5 * 20 + 7 * 5 + 11 * 2 + 0xA5) % 256, as StatusHelper.lua computes it
+        assertEquals(85, PixelBridge.checksum(cell1(10, 3, 20), 5 << 16 | 2 << 8));
+        // Blue byte of cell 2 is the checksum itself and does not feed into it
+        assertEquals(85, PixelBridge.checksum(cell1(10, 3, 20), 5 << 16 | 2 << 8 | 0x7F));
+    }
+
+    @Test
+    void validStripDecodesTheExactState() {
+        int cell1 = cell1(42, PixelBridge.Status.FLAG_FISHING | PixelBridge.Status.FLAG_BAGS_FULL, 17);
+        PixelBridge.Status status = PixelBridge.decode(LEGACY_IDLE, cell1, cell2(cell1, 200, 9), 3, 1000);
+        assertTrue(status.isExtended());
+        assertTrue(status.isFishing());
+        assertTrue(status.isBagsFull());
+        assertFalse(status.isCaught());
+        assertFalse(status.isTooFar());
+        assertEquals(17, status.getFreeBagSlots());
+        assertEquals(200, status.getLootCount());
+        assertEquals(9, status.getTooFarCount());
+        assertEquals(3, status.getSequence());
+        assertEquals(1000, status.getTimestamp());
+    }
+
+    @Test
+    void anySingleBitFlipFallsBackToTheLegacyPixel() {
+        // Legacy pixel says fishing, the strip says idle
+        int legacy = 0x00FF64;
+        int cell1 = cell1(7, 0, 30);
+        int cell2 = cell2(cell1, 1, 1);
+        assertFalse(PixelBridge.decode(legacy, cell1, cell2, 0, 0).isFishing());
+        for (int bit = 0; bit < 24; bit++) {
+            PixelBridge.Status torn1 = PixelBridge.decode(legacy, cell1 ^ 1 << bit, cell2, 0, 0);
+            PixelBridge.Status torn2 = PixelBridge.decode(legacy, cell1, cell2 ^ 1 << bit, 0, 0);
+            assertFalse(torn1.isExtended(), "cell 1 bit " + bit);
+            assertFalse(torn2.isExtended(), "cell 2 bit " + bit);
+            assertTrue(torn1.isFishing());
+            assertEquals(-1, torn1.getFreeBagSlots());
+        }
+    }
+
+    @Test
+    void stripWithoutTheHeartbeatIsNotTrusted() {
+        int cell1 = cell1(0, 0, 0);
+        PixelBridge.Status status = PixelBridge.decode(0x000000, cell1, cell2(cell1, 0, 0), 0, 0);
+        assertFalse(status.isExtended());
+        assertFalse(status.isAddonDetected());
+    }
+
+    @Test
+    void legacyThresholds() {
+        assertTrue(PixelBridge.decode(0xFF0064, 0, 0, 0, 0).isBagsFull());
+        assertTrue(PixelBridge.decode(0x00FFF0, 0, 0, 0, 0).isCaught());
+        assertTrue(PixelBridge.decode(0x00FFB4, 0, 0, 0, 0).isTooFar());
+        assertFalse(PixelBridge.decode(0x00FFB4, 0, 0, 0, 0).isCaught());
+        assertFalse(PixelBridge.decode(0x000032, 0, 0, 0, 0).isAddonDetected());
+    }
+
+    @Test
+    void countersDetectALootAcrossTheWrap() {
+        int before1 = cell1(1, PixelBridge.Status.FLAG_FISHING, 10);
+        int after1 = cell1(2, PixelBridge.Status.FLAG_FISHING, 9);
+        PixelBridge.Status before = PixelBridge.decode(LEGACY_IDLE, before1, cell2(before1, 255, 4), 1, 0);
+        PixelBridge.Status same = PixelBridge.decode(LEGACY_IDLE, after1, cell2(after1, 255, 4), 2, 0);
+        PixelBridge.Status looted = PixelBridge.decode(LEGACY_IDLE, after1, cell2(after1, 0, 4), 2, 0);
+        assertFalse(same.isCaughtSince(before));
+        assertTrue(looted.isCaughtSince(before));
+        assertFalse(looted.isTooFarSince(before));
+    }
+
+    /**
+     * Serves a fixed strip at a screen offset.
+     */
+    private static final class StripSource implements FrameSource {
+        private final int originX;
+        private final int originY;
+        volatile int[] strip;
+
+        StripSource(int originX, int originY, int[] strip) {
+            this.originX = originX;
+            this.originY = originY;
+            this.strip = strip;
+        }
+
+        @Override
+        public ScreenCaptureService.Frame capture(Rectangle area, long maxAgeMs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readRow(int x, int y, int width, int[] dest, long maxAgeMs) {
+            assertEquals(originX, x);
+            assertEquals(originY, y);
+            System.arraycopy(strip, 0, dest, 0, width);
+        }
+
+        @Override
+        public Rectangle getScreenBounds(int screenIndex) {
+            return null;
+        }
+    }
+
+    private static int[] strip(int legacy, int cell1, int cell2) {
+        return new int[]{legacy, legacy, cell1, cell1, cell2, cell2};
+    }
+
+    @Test
+    void directReadUsesTheScreenOffset() {
+        int cell1 = cell1(5, PixelBridge.Status.FLAG_CAUGHT, 3);
+        PixelBridge bridge = new PixelBridge(new StripSource(1920, 0, strip(LEGACY_IDLE, cell1, cell2(cell1, 8, 0))));
+        bridge.setOffset(1920, 0);
+        PixelBridge.Status status = bridge.getStatus();
+        assertTrue(status.isCaught());
+        assertEquals(8, status.getLootCount());
+        assertEquals(0, status.getSequence());
+        // Without the sampler there is no frame timing to go by
+        assertFalse(bridge.isFrozen());
+    }
+
+    @Test
+    void samplerPublishesChanges() throws InterruptedException {
+        int idle1 = cell1(1, 0, 3);
+        StripSource source = new StripSource(0, 0, strip(LEGACY_IDLE, idle1, cell2(idle1, 0, 0)));
+        PixelBridge bridge = new PixelBridge(source);
+        bridge.setSampleInterval(1);
+        CountDownLatch fishing = new CountDownLatch(1);
+        AtomicReference<PixelBridge.Status> seen = new AtomicReference<>();
+        bridge.addListener(status -> {
+            if (status.isFishing()) {
+                seen.set(status);
+                fishing.countDown();
+            }
+        });
+        bridge.start();
+        try {
+            int fishing1 = cell1(2, PixelBridge.Status.FLAG_FISHING, 3);
+            source.strip = strip(LEGACY_IDLE, fishing1, cell2(fishing1, 0, 0));
+            assertTrue(fishing.await(5, TimeUnit.SECONDS));
+            assertTrue(seen.get().getSequence() >= 1);
+            assertTrue(bridge.getStatus().isFishing());
+        } finally {
+            bridge.stop();
+        }
+    }
+
+    @Test
+    void awaitStatusWakesUpOnAChangeAndTimesOut() throws InterruptedException {
+        int idle1 = cell1(1, 0, 3);
+        StripSource source = new StripSource(0, 0, strip(LEGACY_IDLE, idle1, cell2(idle1, 0, 0)));
+        PixelBridge bridge = new PixelBridge(source);
+        bridge.setSampleInterval(1);
+        bridge.start();
+        try {
+            assertFalse(bridge.awaitStatus(PixelBridge.Status::isAddonDetected, 0).isFishing());
+            assertNull(bridge.awaitStatus(PixelBridge.Status::isFishing, 50));
+
+            Thread flip = new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int fishing1 = cell1(2, PixelBridge.Status.FLAG_FISHING, 3);
+                source.strip = strip(LEGACY_IDLE, fishing1, cell2(fishing1, 0, 0));
+            });
+            flip.start();
+            PixelBridge.Status status = bridge.awaitStatus(PixelBridge.Status::isFishing, 5000);
+            flip.join();
+            assertTrue(status != null && status.isFishing());
+        } finally {
+            bridge.stop();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package no.kess.utility.engine;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RednessScannerTest {
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Water with a few red pixels, many of them sharing the top score so the tie-break decides the pick.
+     */
+    private static int[] frame(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (30 + random.nextInt(20)) << 16 | (80 + random.nextInt(40)) << 8 | (110 + random.nextInt(40));
+        }
+        for (int i = 0; i < 40; i++) {
+            pixels[random.nextInt(pixels.length)] = 0xC81E1E;
+        }
+        for (int i = 0; i < 200; i++) {
+            pixels[random.nextInt(pixels.length)] = (120 + random.nextInt(80)) << 16 | 20 << 8 | 20;
+        }
+        return pixels;
+    }
+
+    @Test
+    void packedCandidatesOrderByScoreThenSmallestXThenSmallestY() {
+        long candidate = RednessScanner.pack(300, 17, 42);
+        assertEquals(300, RednessScanner.scoreOf(candidate));
+        assertEquals(17, RednessScanner.xOf(candidate));
+        assertEquals(42, RednessScanner.yOf(candidate));
+
+        int[] pixels = new int[16 * 16];
+        pixels[5 * 16 + 9] = 0xC81E1E;
+        pixels[7 * 16 + 3] = 0xC81E1E;
+        pixels[2 * 16 + 3] = 0xC81E1E;
+        long best = RednessScanner.scan(pixels, 0, 16, 16, 16, 1);
+        assertEquals(3, RednessScanner.xOf(best));
+        assertEquals(2, RednessScanner.yOf(best));
+    }
+
+    @Test
+    void emptyFrameHasNoCandidate() {
+        assertEquals(RednessScanner.NONE, RednessScanner.scan(new int[64 * 64], 0, 64, 64, 64, 1));
+    }
+
+    @Test
+    void parallelScanPicksTheSameCandidateAsTheSequentialScan() {
+        RednessScanner.ParallelScan parallel = new RednessScanner.ParallelScan(pool);
+        int width = 700;
+        int height = 500;
+        for (long seed = 1; seed <= 5; seed++) {
+            int[] pixels = frame(width, height, seed);
+            for (int step = 1; step <= 3; step++) {
+                long expected = RednessScanner.scan(PixelScorer.REDNESS, pixels, 0, width, width, height, step);
+                assertEquals(expected, parallel.scan(PixelScorer.REDNESS, pixels, 0, width, width, height, step),
+                        "seed " + seed + ", step " + step);
+            }
+            // A sub-area with an offset and a scanline wider than the area, as a shared frame hands it out
+            int offset = 37 * width + 11;
+            long expected = RednessScanner.scan(PixelScorer.REDNESS, pixels, offset, width, 600, 420, 1);
+            assertEquals(expected, parallel.scan(PixelScorer.REDNESS, pixels, offset, width, 600, 420, 1));
+        }
+    }
+
+    @Test
+    void parallelScanUsesACustomScorer() {
+        RednessScanner.ParallelScan parallel = new RednessScanner.ParallelScan(pool);
+        PixelScorer blue = rgb -> rgb & 0xFF;
+        int[] pixels = frame(600, 400, 9);
+        assertEquals(RednessScanner.scan(blue, pixels, 0, 600, 600, 400, 1),
+                parallel.scan(blue, pixels, 0, 600, 600, 400, 1));
+    }
+
+    @Test
+    void imageScanReadsASubimageInPlace() {
+        int[] pixels = frame(300, 200, 4);
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 300, 200, pixels, 0, 300);
+        BufferedImage sub = image.getSubimage(20, 30, 200, 100);
+        assertEquals(RednessScanner.scan(pixels, 30 * 300 + 20, 300, 200, 100, 2), RednessScanner.scan(sub, 2));
+    }
+}
@@ -0,0 +1,106 @@
+package no.kess.utility.history;
+
+import no.kess.utility.util.Log;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CastHistoryTest {
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    @TempDir
+    File directory;
+
+    @BeforeAll
+    static void quiet() {
+        Log.setLevel(Log.Level.ERROR);
+    }
+
+    private File file() {
+        return new File(directory, "utility.history");
+    }
+
+    private static void append(CastHistory history, long castTime, CastRecord.Outcome outcome) {
+        CastRecord record = new CastRecord();
+        record.begin(castTime);
+        record.markBobber(castTime + 500, 400, 10, 20);
+        record.end(castTime + 15_000, outcome);
+        history.append(record);
+    }
+
+    @Test
+    void partialBlockIsReadableAfterFlush() {
+        CastHistory history = new CastHistory(file());
+        for (int i = 0; i < 5; i++) {
+            append(history, i * 20_000L, CastRecord.Outcome.CAUGHT);
+        }
+        history.flush();
+
+        HistorySummary summary = new CastHistory(file()).summarize(0, Long.MAX_VALUE);
+        assertEquals(5, summary.getCasts());
+        assertEquals(5, summary.getCount(CastRecord.Outcome.CAUGHT));
+    }
+
+    @Test
+    void blockCutShortByACrashIsDropped() throws IOException {
+        CastHistory history = new CastHistory(file());
+        for (int i = 0; i < 3; i++) {
+            append(history, i * 20_000L, CastRecord.Outcome.CAUGHT);
+        }
+        history.flush();
+        long intact = file().length();
+        for (int i = 3; i < 7; i++) {
+            append(history, i * 20_000L, CastRecord.Outcome.TIMEOUT);
+        }
+        history.flush();
+        try (RandomAccessFile raf = new RandomAccessFile(file(), "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        CastHistory reopened = new CastHistory(file());
+        assertEquals(intact, file().length());
+        HistorySummary summary = reopened.summarize(0, Long.MAX_VALUE);
+        assertEquals(3, summary.getCasts());
+        assertEquals(0, summary.getCount(CastRecord.Outcome.TIMEOUT));
+
+        // New blocks go right after the intact ones
+        append(reopened, 200_000L, CastRecord.Outcome.TOO_FAR);
+        reopened.flush();
+        summary = new CastHistory(file()).summarize(0, Long.MAX_VALUE);
+        assertEquals(4, summary.getCasts());
+        assertEquals(1, summary.getCount(CastRecord.Outcome.TOO_FAR));
+    }
+
+    @Test
+    void queriesSpanFullAndPartialBlocks() {
+        CastHistory history = new CastHistory(file());
+        int casts = 2 * CastHistory.BLOCK_ROWS + 10;
+        for (int i = 0; i < casts; i++) {
+            // One cast a minute, every other one caught
+            append(history, i * 60_000L, i % 2 == 0 ? CastRecord.Outcome.CAUGHT : CastRecord.Outcome.NO_LOOT);
+        }
+        // Not flushed, queries include the buffered rows
+        assertEquals(casts, history.summarize(0, Long.MAX_VALUE).getCasts());
+        assertEquals(30, history.summarize(HOUR_MS, 90 * 60_000L).getCasts());
+        assertArrayEquals(new long[]{30, 30, 9}, history.catchesPerHour(0, 3 * HOUR_MS));
+    }
+
+    @Test
+    void unknownFileIsLeftAlone() throws IOException {
+        byte[] foreign = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+        Files.write(file().toPath(), foreign);
+        CastHistory history = new CastHistory(file());
+        append(history, 0, CastRecord.Outcome.CAUGHT);
+        history.flush();
+        assertEquals(0, history.summarize(0, Long.MAX_VALUE).getCasts());
+        assertArrayEquals(foreign, Files.readAllBytes(file().toPath()));
+    }
+}
@@ -0,0 +1,99 @@
+package no.kess.utility.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    private static final int LAST_BUCKET = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+
+    private static void assertInBucket(long value) {
+        int bucket = LatencyHistogram.bucketOf(value);
+        long low = LatencyHistogram.lowerBound(bucket);
+        long high = LatencyHistogram.lowerBound(bucket + 1);
+        assertTrue(low <= value, value + " below its bucket " + bucket);
+        assertTrue(value < high || (bucket == LAST_BUCKET && value == Long.MAX_VALUE),
+                value + " above its bucket " + bucket);
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        for (long value = 0; value < 100_000; value++) {
+            assertInBucket(value);
+        }
+        for (int shift = 4; shift < 63; shift++) {
+            long power = 1L << shift;
+            assertInBucket(power - 1);
+            assertInBucket(power);
+            assertInBucket(power + 1);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            assertInBucket(random.nextLong() >>> (1 + random.nextInt(63)));
+        }
+        assertInBucket(Long.MAX_VALUE);
+    }
+
+    @Test
+    void bucketsAreContiguousAndNarrow() {
+        for (int bucket = 0; bucket <= LAST_BUCKET; bucket++) {
+            long low = LatencyHistogram.lowerBound(bucket);
+            long high = LatencyHistogram.lowerBound(bucket + 1);
+            assertEquals(bucket, LatencyHistogram.bucketOf(low));
+            assertTrue(high > low);
+            if (bucket < LAST_BUCKET) {
+                assertEquals(bucket + 1, LatencyHistogram.bucketOf(high));
+            }
+            // Within a sixteenth of the value, the documented resolution
+            assertTrue(high - low <= Math.max(1, low / 16), "bucket " + bucket + " is too wide");
+        }
+    }
+
+    @Test
+    void percentilesAndTotals() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(0.5));
+        assertEquals("no samples", histogram.getSummary());
+
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMaxMicros());
+        assertEquals(500.5, histogram.getMeanMicros());
+        assertEquals(500, histogram.getPercentileMicros(0.50), 500 / 16.0);
+        assertEquals(990, histogram.getPercentileMicros(0.99), 990 / 16.0);
+        // Capped at the largest value recorded
+        assertEquals(1000, histogram.getPercentileMicros(1.0));
+
+        histogram.record(-5);
+        assertEquals(0, histogram.getPercentileMicros(0.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i * 4 + offset);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(39_999, histogram.getMaxMicros());
+    }
+}
@@ -0,0 +1,46 @@
+package no.kess.utility.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VectorRednessScannerTest {
+    private final VectorRednessScanner vector = new VectorRednessScanner();
+
+    @Test
+    void picksTheSameCandidateAsTheScalarScan() {
+        Random random = new Random(11);
+        int[] widths = {1, 7, 16, 33, 250, 257};
+        for (int width : widths) {
+            int height = 40;
+            int scanline = width + 5;
+            int[] pixels = new int[scanline * (height + 2)];
+            for (int i = 0; i < pixels.length; i++) {
+                // Opaque captures carry alpha, which must not leak into the red channel
+                int alpha = random.nextBoolean() ? 0xFF000000 : 0;
+                pixels[i] = alpha | random.nextInt(0x1000000);
+            }
+            for (int i = 0; i < 20; i++) {
+                // Shared top scores, so the tie-break decides
+                pixels[random.nextInt(pixels.length)] = 0xFFFF0000;
+            }
+            for (int step = 1; step <= 4; step++) {
+                for (int offset : new int[]{0, scanline + 3}) {
+                    assertEquals(RednessScanner.scan(pixels, offset, scanline, width, height, step),
+                            vector.scan(pixels, offset, scanline, width, height, step),
+                            "width " + width + ", step " + step + ", offset " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    void noRedPixelHasNoCandidate() {
+        int[] pixels = new int[64 * 8];
+        Arrays.fill(pixels, 0x285A78);
+        assertEquals(RednessScanner.NONE, vector.scan(pixels, 0, 64, 64, 8, 1));
+    }
+}
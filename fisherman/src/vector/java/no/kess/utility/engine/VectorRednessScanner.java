@@ -0,0 +1,73 @@
+package no.kess.utility.engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Redness scan on the incubating Vector API, scoring a lane-width of packed pixels at a time.
+ * <p>
+ * Only compiled with the {@code vector} Maven profile and loaded reflectively by {@link RednessScanner}; it returns
+ * exactly what the scalar scan returns, ties included.
+ */
+public class VectorRednessScanner implements RednessScanner.PeakScanner {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public long scan(int[] pixels, int offset, int scanline, int width, int height, int step) {
+        int lanes = SPECIES.length();
+        if (lanes % step != 0) {
+            // Chunks would not line up with the sampling grid
+            return RednessScanner.scan(pixels, offset, scanline, width, height, step);
+        }
+
+        // Chunks start on the grid, so the same lanes are sampled in every chunk
+        boolean[] onGrid = new boolean[lanes];
+        for (int lane = 0; lane < lanes; lane += step) {
+            onGrid[lane] = true;
+        }
+        VectorMask<Integer> gridMask = VectorMask.fromArray(SPECIES, onGrid, 0);
+        int vectorWidth = width - width % lanes;
+
+        long best = RednessScanner.NONE;
+        int bestScore = 1;
+        for (int y = 0; y < height; y += step) {
+            int row = offset + y * scanline;
+            int x = 0;
+            for (; x < vectorWidth; x += lanes) {
+                IntVector rgb = IntVector.fromArray(SPECIES, pixels, row + x);
+                IntVector r2 = rgb.lanewise(VectorOperators.LSHR, 15).and(0x1FE);
+                IntVector g = rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+                IntVector b = rgb.and(0xFF);
+                VectorMask<Integer> red = r2.compare(VectorOperators.GT, g.mul(3))
+                        .and(r2.compare(VectorOperators.GT, b.mul(3)))
+                        .and(gridMask);
+                if (!red.anyTrue()) continue;
+
+                IntVector score = r2.sub(g).sub(b);
+                int chunkMax = score.reduceLanes(VectorOperators.MAX, red);
+                if (chunkMax >= bestScore) {
+                    // Lowest lane with the chunk maximum is the smallest x, as in the scalar scan
+                    int lane = score.compare(VectorOperators.EQ, chunkMax).and(red).firstTrue();
+                    long candidate = RednessScanner.pack(chunkMax, x + lane, y);
+                    if (candidate > best) {
+                        best = candidate;
+                        bestScore = chunkMax;
+                    }
+                }
+            }
+            for (; x < width; x += step) {
+                int s = RednessScanner.score(pixels[row + x]);
+                if (s >= bestScore) {
+                    long candidate = RednessScanner.pack(s, x, y);
+                    if (candidate > best) {
+                        best = candidate;
+                        bestScore = s;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}